@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.plan;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time taken per Function.invoke call, for a static function
+ * with a converted constant argument, and an instance method called on the
+ * running value.
+ *
+ * Debug logging is turned off while measuring.  Run with:
+ * <pre>
+ *   mvn -P jmh test-compile exec:exec -Djmh.args=FunctionInvokeBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FunctionInvokeBenchmark {
+
+    private Function leftPad;
+    private Function trim;
+
+    private static Function function(String name, Class<?> returnType, Argument... arguments) throws Exception {
+        for (final Argument arg : arguments) {
+            arg.afterUnmarshal(null, null);
+        }
+        final Function fn = new Function(name, false);
+        fn.setArguments(List.of(arguments));
+        fn.initialize(returnType);
+        return fn;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        // measures invocations rather than debug logging
+        Configurator.setRootLevel(Level.INFO);
+        leftPad = function(
+            "org.apache.commons.lang3.StringUtils#leftPad",
+            String.class,
+            new Argument("str", String.class, true),
+            new Argument("size", Integer.class, "12"),
+            new Argument("padStr", String.class, "*")
+        );
+        trim = function("java.lang.String#trim", String.class);
+    }
+
+    @Benchmark
+    public Object staticFunction() throws Exception {
+        return leftPad.invoke("value");
+    }
+
+    @Benchmark
+    public Object instanceMethod() throws Exception {
+        return trim.invoke(" value ");
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reversible encryption of a batch of identifiers by the per-value
+ * Cipher set up Encoder used to do, EncryptionEngine and
+ * FormatPreservingEngine.
+ *
+ * Run with:
+ * <pre>
+ *   mvn -P jmh test-compile exec:exec -Djmh.args=EncryptionBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionBenchmark {
+
+    private static final String SECRET = "benchmark secret";
+    private static final int VALUES = 1000;
+
+    /**
+     * Format of the values: a SIN, a phone number or an account number.
+     */
+    @Param({ "999 999 999", "+1 (999) 999-9999", "9999999999999999" })
+    public String format;
+
+    private String[] values;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(1);
+        values = new String[VALUES];
+        for (int i = 0; i < VALUES; ++i) {
+            final char[] chars = format.toCharArray();
+            for (int j = 0; j < chars.length; ++j) {
+                if (chars[j] == '9') {
+                    chars[j] = (char) ('0' + random.nextInt(10));
+                }
+            }
+            values[i] = new String(chars);
+        }
+    }
+
+    @Benchmark
+    public String[] encoderPerValueCipher() throws Exception {
+        final String[] encrypted = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            final Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, Encoder.createKey(SECRET));
+            encrypted[i] = Base64.getEncoder().encodeToString(
+                cipher.doFinal(values[i].getBytes(StandardCharsets.UTF_8))
+            );
+        }
+        return encrypted;
+    }
+
+    @Benchmark
+    public String[] encryptionEngine() {
+        return EncryptionEngine.forSecret(SECRET).encryptBatch(values);
+    }
+
+    @Benchmark
+    public String[] formatPreservingEngine() {
+        return FormatPreservingEngine.forSecret(SECRET).encryptBatch(values);
+    }
+}
@@ -52,8 +52,8 @@ public class Anonymize implements Callable<Integer> {
     @Option(names = { "-r", "--requirement-file" }, paramLabel = "<requirementFile>", description = "Requirement XML file", required = true)
     private Requirement requirement;
 
-    @Option(names = { "-b", "--batch-size" }, description = "Number of update queries to batch together", defaultValue = "1000")
-    private Integer batchSize;
+    @ArgGroup(exclusive = false, multiplicity = "0..1", heading = "Anonymizer settings%n")
+    private AnonymizerConfig anonymizerConfig;
 
     @ArgGroup(exclusive = false, multiplicity = "1", heading = "Database connection settings%n")
     private DbConfig dbConfig;
@@ -63,11 +63,15 @@ public class Anonymize implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception {
+        if (anonymizerConfig == null) {
+            anonymizerConfig = new AnonymizerConfig();
+        }
+
         System.out.println("");
         System.out.println("Starting anonymizer");
         log.info("Datasource URL: {}, vendor: {}, schema: {}", dbConfig.getUrl(), dbConfig.getVendor(), dbConfig.getSchema());
         log.info("Username: {}, Password provided: {}", dbConfig.getUsername(), (StringUtils.isNotBlank(dbConfig.getPassword()) ? "yes" : "no"));
-        log.info("Batch size: {}", batchSize);
+        log.info("Batch size: {}, threads: {}", anonymizerConfig.getBatchSize(), anonymizerConfig.getThreads());
         log.info("Limiting to tables: {}", CollectionUtils.isEmpty(tables) ? "<all tables selected>" : StringUtils.join(tables, ", "));
 
         IDbFactory factory = IDbFactory.get(dbConfig);
@@ -76,7 +80,7 @@ public class Anonymize implements Callable<Integer> {
         final IAnonymizer anonymizer = new DatabaseAnonymizer(
             factory,
             dbConfig,
-            batchSize,
+            anonymizerConfig,
             requirement,
             tables
         );
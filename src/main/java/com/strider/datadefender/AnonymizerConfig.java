@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender;
+
+import java.io.File;
+import java.util.Map;
+
+import picocli.CommandLine.Option;
+
+import lombok.Getter;
+
+/**
+ * Anonymizer options for picocli.
+ */
+@Getter
+public class AnonymizerConfig {
+
+    public enum WriteStrategy {
+        ROW, STAGING;
+    }
+
+    private static final Map<String, WriteStrategy> WRITE_STRATEGY_MAP = Map.of(
+        "row", WriteStrategy.ROW,
+        "staging", WriteStrategy.STAGING
+    );
+
+    @Option(names = { "-b", "--batch-size" }, description = "Number of update queries to batch together", defaultValue = "1000")
+    private Integer batchSize = 1000;
+
+    @Option(names = { "--batch-target-millis" }, description = "Target time for writing and committing a batch.  "
+        + "When set, each table's batch size starts at --batch-size and is adjusted after every batch to reach it, "
+        + "between --min-batch-size and --max-batch-size.  0 keeps --batch-size fixed", defaultValue = "0")
+    private Integer batchTargetMillis = 0;
+
+    @Option(names = { "--min-batch-size" }, description = "Smallest batch size used with --batch-target-millis",
+        defaultValue = "10")
+    private Integer minBatchSize = 10;
+
+    @Option(names = { "--max-batch-size" }, description = "Largest batch size used with --batch-target-millis",
+        defaultValue = "50000")
+    private Integer maxBatchSize = 50000;
+
+    @Option(names = { "--batch-heap-threshold" }, description = "Percentage of the maximum heap size in use above "
+        + "which batch sizes are halved with --batch-target-millis", defaultValue = "80")
+    private Integer batchHeapThreshold = 80;
+
+    @Option(names = { "-t", "--threads" }, description = "Number of tables to anonymize concurrently, each worker "
+        + "using its own read and update database connections", defaultValue = "1")
+    private Integer threads = 1;
+
+    @Option(names = { "--partitions" }, description = "Number of primary key ranges to split each table into, "
+        + "so ranges of a single table can be anonymized by several --threads workers", defaultValue = "1")
+    private Integer partitions = 1;
+
+    @Option(names = { "--transform-threads" }, description = "Number of threads running anonymization functions on "
+        + "rows read from a table, between a reading and a writing thread.  0 reads, anonymizes and writes rows on a "
+        + "single thread", defaultValue = "0")
+    private Integer transformThreads = 0;
+
+    @Option(names = { "--page-size" }, description = "Read tables in pages of this many rows in primary key order, "
+        + "each page continuing after the last key of the previous one and committed before the next is read.  "
+        + "0 reads each table with a single query", defaultValue = "0")
+    private Integer pageSize = 0;
+
+    @Option(names = { "--checkpoint-file" }, description = "File recording the last committed row of each table, "
+        + "so an interrupted run can be resumed with --resume.  Tables are read in primary key order when set")
+    private File checkpointFile;
+
+    @Option(names = { "--resume" }, description = "Skip tables completed in the run recorded in --checkpoint-file, "
+        + "and continue partially anonymized tables after their last recorded row.  Rows committed after the "
+        + "file was last written are anonymized again, so reversibly encrypted values in them are encrypted twice")
+    private boolean resume;
+
+    @Option(names = { "--seed" }, description = "Seed for random values, making a run reproducible.  Values of "
+        + "tables with primary keys are seeded by the row's keys, so they're the same for any number of --threads, "
+        + "--partitions and --transform-threads")
+    private Long seed;
+
+    @Option(names = { "--value-list-memory" }, description = "Megabytes of heap used by lists of values read from "
+        + "database columns by Table functions, beyond which further values are kept in temporary memory-mapped "
+        + "files.  0 doesn't limit them", defaultValue = "0")
+    private Integer valueListMemory = 0;
+
+    private WriteStrategy writeStrategy = WriteStrategy.ROW;
+
+    @Option(
+        names = { "--write-strategy" },
+        description = "How anonymized rows are written, available options are: row (an UPDATE per row, sent in "
+            + "batches), staging (rows are inserted into a temporary table and applied with one UPDATE per batch.  "
+            + "Needs the CREATE TABLE privilege on Oracle, where a global temporary table named DD_STG_<hash> is "
+            + "created once for each table and kept for later runs)",
+        defaultValue = "row"
+    )
+    public void setWriteStrategy(String writeStrategy) {
+        String c = writeStrategy.trim().toLowerCase();
+        if (!WRITE_STRATEGY_MAP.containsKey(c)) {
+            throw new IllegalArgumentException(
+                "Invalid value for option '--write-strategy': Valid options are: row and staging."
+            );
+        }
+        this.writeStrategy = WRITE_STRATEGY_MAP.get(c);
+    }
+}
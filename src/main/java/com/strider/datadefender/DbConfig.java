@@ -59,6 +59,9 @@ public class DbConfig {
     @Option(names = { "--no-skip-empty-tables-metadata" }, description = "Include generating metadata for empty tables (defaults to skipping)", defaultValue = "true", negatable = true)
     private boolean skipEmptyTables = true;
 
+    @Option(names = { "--exact-row-counts" }, description = "Count rows in tables with COUNT(*) queries instead of using estimates from database statistics")
+    private boolean exactRowCounts;
+
     @Option(names = { "--include-table-pattern-metadata" }, description = "Pattern(s) matching table names to include for metadata analysis")
     private List<Pattern> includeTablePatterns;
     @Option(names = { "--exclude-table-pattern-metadata" }, description = "Pattern(s) matching table names to exclude for metadata analysis")
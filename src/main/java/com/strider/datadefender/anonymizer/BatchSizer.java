@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.AnonymizerConfig;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Chooses the number of rows written per batch for a table.
+ *
+ * With a target latency, times each flush (executeBatch and commit) of a full
+ * batch and scales the batch size towards the number of rows that would take
+ * the target time to write, at most doubling or halving it at once and within
+ * the configured bounds.  Regardless of latency, the batch size is halved
+ * while heap usage is above the configured threshold.
+ *
+ * Without a target, the batch size stays fixed.
+ */
+@Log4j2
+public class BatchSizer {
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetNanos;
+    private final double heapThreshold;
+    private final DoubleSupplier heapUsage;
+
+    private volatile int batchSize;
+    private int smallest;
+    private int largest;
+
+    /**
+     * Uses the batch size options of the passed config.
+     *
+     * @param config
+     */
+    public BatchSizer(final AnonymizerConfig config) {
+        this(
+            config.getBatchSize(),
+            config.getMinBatchSize(),
+            config.getMaxBatchSize(),
+            config.getBatchTargetMillis(),
+            config.getBatchHeapThreshold() / 100.0,
+            BatchSizer::getHeapUsage
+        );
+    }
+
+    BatchSizer(
+        final int batchSize,
+        final int minBatchSize,
+        final int maxBatchSize,
+        final long targetMillis,
+        final double heapThreshold,
+        final DoubleSupplier heapUsage
+    ) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, targetMillis));
+        this.heapThreshold = heapThreshold;
+        this.heapUsage = heapUsage;
+        this.batchSize = isAdaptive() ? clamp(batchSize) : Math.max(1, batchSize);
+        this.smallest = this.batchSize;
+        this.largest = this.batchSize;
+    }
+
+    private static double getHeapUsage() {
+        final Runtime runtime = Runtime.getRuntime();
+        return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+    }
+
+    private int clamp(final long size) {
+        return (int) Math.min(maxBatchSize, Math.max(minBatchSize, size));
+    }
+
+    /**
+     * Returns true if the batch size is adjusted to a target latency.
+     *
+     * @return
+     */
+    public boolean isAdaptive() {
+        return targetNanos > 0;
+    }
+
+    /**
+     * Returns the number of rows to add before the next flush.
+     *
+     * @return
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Flushes the passed writer, adjusting the batch size to the time it took
+     * if rows is a full batch.
+     *
+     * @param writer
+     * @param rows the number of rows added since the last flush
+     * @throws SQLException
+     */
+    public void flush(final IRowWriter writer, final int rows) throws SQLException {
+        final long start = System.nanoTime();
+        writer.flush();
+        record(rows, System.nanoTime() - start);
+    }
+
+    /**
+     * Adjusts the batch size after rows were written in elapsedNanos.
+     *
+     * Partial batches aren't used to size the next one, since the fixed cost
+     * of a round trip would make their rows look more expensive than they are.
+     *
+     * @param rows
+     * @param elapsedNanos
+     */
+    synchronized void record(final int rows, final long elapsedNanos) {
+        if (!isAdaptive()) {
+            return;
+        }
+        final int current = batchSize;
+        long next = current;
+        if (heapUsage.getAsDouble() >= heapThreshold) {
+            next = current / 2;
+            log.debug("Heap usage above {}%, reducing batch size", Math.round(heapThreshold * 100));
+        } else if (rows >= current) {
+            final double ideal = (double) rows * targetNanos / Math.max(1L, elapsedNanos);
+            next = Math.round(Math.min(current * 2.0, Math.max(current / 2.0, ideal)));
+        }
+        final int size = clamp(next);
+        if (size != current) {
+            log.debug("Batch of {} rows written in {}ms, batch size changed to {}",
+                rows, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), size);
+            batchSize = size;
+            smallest = Math.min(smallest, size);
+            largest = Math.max(largest, size);
+        }
+    }
+
+    /**
+     * Describes the batch sizes used, for logging once a table is done.
+     *
+     * @return
+     */
+    @Override
+    public synchronized String toString() {
+        return "batch size " + batchSize + " (ranged from " + smallest + " to " + largest + ")";
+    }
+}
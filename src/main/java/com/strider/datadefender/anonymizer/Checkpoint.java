@@ -0,0 +1,482 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.DataDefenderException;
+import com.strider.datadefender.requirement.Column;
+import com.strider.datadefender.requirement.Table;
+import com.strider.datadefender.requirement.plan.Argument;
+import com.strider.datadefender.requirement.plan.Function;
+import com.strider.datadefender.requirement.plan.Plan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.collections4.CollectionUtils;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Records progress of an anonymization run in a local properties file, so
+ * an interrupted run can be resumed.
+ *
+ * For each table (or key range of a table), the file holds a fingerprint of
+ * the table's requirement, and either the keys of the last committed row, or
+ * a marker that the table has been completed.  The file is rewritten after
+ * every commit, by writing a temporary file, forcing it to disk and moving it
+ * in place, so it's never left partially written.  Only the copy of the
+ * properties is taken under the checkpoint's lock.  Workers then write in
+ * turn, and one that finds a later copy already written skips its own, so
+ * concurrent commits share a write.
+ *
+ * Recording isn't part of the database transaction, so rows committed just
+ * before a run stopped may not be recorded, and are anonymized again when it's
+ * resumed.
+ *
+ * The key ranges a table was split into are recorded before it's anonymized,
+ * and re-used when resuming, so each range covers the same rows it did in
+ * the interrupted run.
+ *
+ * Keys are written in a lossless text form, and only keys of the types
+ * handled by encodeKey can be recorded.
+ *
+ * Keys are only meaningful if rows are committed in key order, so tables are
+ * read ordered by their primary key columns while a checkpoint is kept.
+ */
+@Log4j2
+public class Checkpoint {
+
+    private static final String COMPLETE = "complete";
+    private static final String PARTIAL = "partial";
+
+    private final Path file;
+    private final Properties properties = new Properties();
+    private final Object writeLock = new Object();
+
+    // number of changes copied for writing, guarded by this
+    private long changes;
+    // number of changes in the copy last written, guarded by writeLock
+    private long written;
+
+    /**
+     * Creates a checkpoint backed by the passed file.
+     *
+     * If resume is true, progress is loaded from the file if it exists.
+     * Otherwise the file is overwritten on the first commit.
+     *
+     * @param file
+     * @param resume
+     * @throws DataDefenderException
+     */
+    public Checkpoint(final Path file, final boolean resume) throws DataDefenderException {
+        this.file = file;
+        if (resume && Files.exists(file)) {
+            log.info("Resuming from checkpoint file: {}", file);
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new DataDefenderException("Unable to read checkpoint file " + file, e);
+            }
+        } else if (resume) {
+            log.warn("Checkpoint file {} doesn't exist, starting from the beginning", file);
+        }
+    }
+
+    /**
+     * Returns a hash of the parts of a table's requirement that affect how
+     * it's anonymized: the columns to anonymize, their plans and exclusions,
+     * and the table's where condition, keys and exclusions.
+     *
+     * @param table
+     * @return
+     */
+    public static String fingerprint(final Table table) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(table.getName()).append('|').append(table.getWhere()).append('|')
+            .append(table.getPrimaryKeyColumnNames()).append('|').append(table.getExclusions());
+        for (final Column column : CollectionUtils.emptyIfNull(table.getColumns())) {
+            sb.append("|column:").append(column.getName()).append(',').append(column.getType().getName())
+                .append(',').append(column.getExclusions());
+            final Plan plan = column.getResolvedPlan();
+            if (plan != null) {
+                sb.append(",glue:").append(plan.getCombinerGlue());
+                if (plan.getCombiner() != null) {
+                    sb.append(",combiner:").append(plan.getCombiner().getFunctionName());
+                }
+                for (final Function fn : CollectionUtils.emptyIfNull(plan.getFunctions())) {
+                    sb.append(",fn:").append(fn.getFunction() != null ? fn.getFunction() : fn.getFunctionName());
+                    for (final Argument arg : CollectionUtils.emptyIfNull(fn.getArguments())) {
+                        sb.append(",arg:").append(arg.getName()).append(',').append(arg.getType().getName())
+                            .append(',').append(arg.getValueAttribute()).append(',').append(arg.getIsDynamicValue())
+                            .append(',').append(arg.getElements());
+                    }
+                }
+            }
+        }
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                sb.toString().getBytes(StandardCharsets.UTF_8)
+            );
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the table's requirement, followed by the
+     * bounds of the passed range if it isn't null.
+     *
+     * @param table
+     * @param range
+     * @return
+     * @throws DataDefenderException if the range's keys can't be recorded
+     */
+    public static String fingerprint(final Table table, final KeyRange range) throws DataDefenderException {
+        final String fingerprint = fingerprint(table);
+        if (range == null) {
+            return fingerprint;
+        }
+        final StringBuilder sb = new StringBuilder(fingerprint);
+        for (final Object[] bound : new Object[][] { range.getLower(), range.getUpper() }) {
+            sb.append("|bound:");
+            if (bound != null) {
+                for (final Object key : bound) {
+                    final String[] encoded = encodeKey(key);
+                    sb.append(encoded[0]).append(':').append(encoded[1].length()).append(':')
+                        .append(encoded[1]).append(',');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the type and text of a key as recorded in the file, both null
+     * for a null key.
+     *
+     * @param key
+     * @return
+     * @throws DataDefenderException if keys of the key's type can't be
+     *  recorded without loss
+     */
+    static String[] encodeKey(final Object key) throws DataDefenderException {
+        if (key == null) {
+            return new String[] { "null", "" };
+        } else if (key instanceof byte[]) {
+            return new String[] { "bytes", Base64.getEncoder().encodeToString((byte[]) key) };
+        } else if (key instanceof Timestamp) {
+            return new String[] { Timestamp.class.getName(), ((Timestamp) key).toInstant().toString() };
+        } else if (key instanceof String || key instanceof Long || key instanceof Integer || key instanceof Short
+            || key instanceof Byte || key instanceof BigInteger || key instanceof BigDecimal || key instanceof Boolean
+            || key instanceof Date || key instanceof LocalDate || key instanceof LocalDateTime
+            || key instanceof OffsetDateTime || key instanceof UUID) {
+            return new String[] { key.getClass().getName(), key.toString() };
+        }
+        throw new DataDefenderException(
+            "Primary keys of type " + key.getClass().getName() + " can't be recorded in a checkpoint file"
+        );
+    }
+
+    /**
+     * Returns the key encoded by encodeKey.
+     *
+     * @param type
+     * @param value
+     * @return
+     * @throws DataDefenderException if the type is unknown or the value can't
+     *  be parsed
+     */
+    static Object decodeKey(final String type, final String value) throws DataDefenderException {
+        try {
+            switch (type) {
+                case "null": return null;
+                case "bytes": return Base64.getDecoder().decode(value);
+                case "java.lang.String": return value;
+                case "java.lang.Long": return Long.valueOf(value);
+                case "java.lang.Integer": return Integer.valueOf(value);
+                case "java.lang.Short": return Short.valueOf(value);
+                case "java.lang.Byte": return Byte.valueOf(value);
+                case "java.lang.Boolean": return Boolean.valueOf(value);
+                case "java.math.BigInteger": return new BigInteger(value);
+                case "java.math.BigDecimal": return new BigDecimal(value);
+                case "java.sql.Date": return Date.valueOf(value);
+                case "java.sql.Timestamp": return Timestamp.from(Instant.parse(value));
+                case "java.time.LocalDate": return LocalDate.parse(value);
+                case "java.time.LocalDateTime": return LocalDateTime.parse(value);
+                case "java.time.OffsetDateTime": return OffsetDateTime.parse(value);
+                case "java.util.UUID": return UUID.fromString(value);
+                default: break;
+            }
+        } catch (RuntimeException e) {
+            throw new DataDefenderException("Invalid key " + value + " of type " + type + " in checkpoint file", e);
+        }
+        throw new DataDefenderException("Unknown key type " + type + " in checkpoint file");
+    }
+
+    private void setKeys(final String prefix, final Object[] keys) throws DataDefenderException {
+        final String[][] encoded = new String[keys.length][];
+        for (int i = 0; i < keys.length; ++i) {
+            encoded[i] = encodeKey(keys[i]);
+        }
+        removeKeys(prefix);
+        properties.setProperty(prefix + ".keys", String.valueOf(keys.length));
+        for (int i = 0; i < keys.length; ++i) {
+            properties.setProperty(prefix + ".key." + i, encoded[i][1]);
+            properties.setProperty(prefix + ".key." + i + ".type", encoded[i][0]);
+        }
+    }
+
+    private Object[] getKeys(final String prefix) throws DataDefenderException {
+        final int n = Integer.parseInt(properties.getProperty(prefix + ".keys", "0"));
+        final Object[] keys = new Object[n];
+        for (int i = 0; i < n; ++i) {
+            final String type = properties.getProperty(prefix + ".key." + i + ".type");
+            final String value = properties.getProperty(prefix + ".key." + i);
+            if (type == null || value == null) {
+                throw new DataDefenderException("Missing key " + prefix + ".key." + i + " in checkpoint file " + file);
+            }
+            keys[i] = decodeKey(type, value);
+        }
+        return (n == 0) ? null : keys;
+    }
+
+    private void removeKeys(final String prefix) {
+        properties.stringPropertyNames().stream()
+            .filter((k) -> k.startsWith(prefix + ".key"))
+            .forEach(properties::remove);
+    }
+
+    /**
+     * Returns the key ranges recorded for the table, or null if none were.
+     *
+     * @param table
+     * @return
+     * @throws DataDefenderException
+     */
+    public synchronized List<KeyRange> getRanges(final Table table) throws DataDefenderException {
+        final String prefix = table.getName() + ".ranges";
+        final String count = properties.getProperty(prefix);
+        if (count == null) {
+            return null;
+        }
+        final List<String> keyNames = table.getPrimaryKeyColumnNames();
+        final List<KeyRange> ranges = new ArrayList<>();
+        Object[] lower = null;
+        for (int i = 1; i < Integer.parseInt(count); ++i) {
+            final Object[] split = getKeys(prefix + ".split." + i);
+            ranges.add(new KeyRange(keyNames, lower, split));
+            lower = split;
+        }
+        ranges.add(new KeyRange(keyNames, lower, null));
+        return ranges;
+    }
+
+    /**
+     * Records the key ranges the table is split into.
+     *
+     * @param table
+     * @param ranges
+     * @throws DataDefenderException
+     */
+    public void setRanges(final Table table, final List<KeyRange> ranges) throws DataDefenderException {
+        final String prefix = table.getName() + ".ranges";
+        synchronized (this) {
+            properties.stringPropertyNames().stream()
+                .filter((k) -> k.startsWith(prefix + ".split."))
+                .forEach(properties::remove);
+            for (int i = 1; i < ranges.size(); ++i) {
+                setKeys(prefix + ".split." + i, ranges.get(i).getLower());
+            }
+            properties.setProperty(prefix, String.valueOf(ranges.size()));
+        }
+        save();
+    }
+
+    /**
+     * Returns the Unit tracking progress for the table or key range with the
+     * passed name.
+     *
+     * @param name
+     * @param table
+     * @param range the unit's key range, or null for the whole table
+     * @return
+     * @throws DataDefenderException if the table's requirement or the range's
+     *  bounds changed since the checkpoint was recorded
+     */
+    public synchronized Unit getUnit(final String name, final Table table, final KeyRange range)
+        throws DataDefenderException {
+        final String fingerprint = fingerprint(table, range);
+        final String recorded = properties.getProperty(name + ".plan");
+        if (recorded != null && !recorded.equals(fingerprint)) {
+            throw new DataDefenderException(
+                "The requirement for " + name + " has changed since it was checkpointed in " + file
+                + ", remove its entries from the file or run without --resume to anonymize it from the beginning"
+            );
+        }
+        return new Unit(name, fingerprint);
+    }
+
+    /**
+     * Writes the current properties to the file, unless a copy including
+     * them was already written by another thread.
+     *
+     * Must not be called while holding the checkpoint's lock, so other
+     * workers can keep recording progress during the write.
+     *
+     * @throws DataDefenderException
+     */
+    private void save() throws DataDefenderException {
+        final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        final long version;
+        synchronized (this) {
+            try {
+                properties.store(contents, "DataDefender anonymizer checkpoint");
+            } catch (IOException e) {
+                // not thrown by a ByteArrayOutputStream
+                throw new UncheckedIOException(e);
+            }
+            version = ++changes;
+        }
+        synchronized (writeLock) {
+            if (version <= written) {
+                return;
+            }
+            write(contents);
+            written = version;
+        }
+    }
+
+    private void write(final ByteArrayOutputStream contents) throws DataDefenderException {
+        try {
+            final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(
+                    tmp,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING
+                );
+                OutputStream out = Channels.newOutputStream(channel)) {
+                contents.writeTo(out);
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // ATOMIC_MOVE isn't supported on every file system
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new DataDefenderException("Unable to write checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * Progress of a single table or key range.
+     */
+    public class Unit {
+
+        private final String name;
+        private final String fingerprint;
+
+        private Unit(final String name, final String fingerprint) {
+            this.name = name;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Returns true if the unit was completed in a previous run.
+         *
+         * @return
+         */
+        public boolean isComplete() {
+            synchronized (Checkpoint.this) {
+                return COMPLETE.equals(properties.getProperty(name + ".status"));
+            }
+        }
+
+        /**
+         * Returns the keys of the last committed row from a previous run, or
+         * null if none were committed.
+         *
+         * @return
+         * @throws DataDefenderException if the recorded keys are invalid
+         */
+        public Object[] getLastCommittedKeys() throws DataDefenderException {
+            synchronized (Checkpoint.this) {
+                if (!PARTIAL.equals(properties.getProperty(name + ".status"))) {
+                    return null;
+                }
+                return getKeys(name);
+            }
+        }
+
+        /**
+         * Records the passed keys as those of the last committed row.
+         *
+         * @param keys
+         * @throws DataDefenderException if the keys can't be recorded
+         */
+        public void commit(final Object[] keys) throws DataDefenderException {
+            synchronized (Checkpoint.this) {
+                setKeys(name, keys);
+                properties.setProperty(name + ".plan", fingerprint);
+                properties.setProperty(name + ".status", PARTIAL);
+            }
+            save();
+        }
+
+        /**
+         * Marks the unit as completed.
+         *
+         * @throws DataDefenderException
+         */
+        public void complete() throws DataDefenderException {
+            synchronized (Checkpoint.this) {
+                removeKeys(name);
+                properties.setProperty(name + ".plan", fingerprint);
+                properties.setProperty(name + ".status", COMPLETE);
+            }
+            save();
+        }
+    }
+}
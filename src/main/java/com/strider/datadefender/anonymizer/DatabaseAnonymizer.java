@@ -15,39 +15,50 @@
  */
 package com.strider.datadefender.anonymizer;
 
+import com.strider.datadefender.AnonymizerConfig;
+import com.strider.datadefender.AnonymizerConfig.WriteStrategy;
 import com.strider.datadefender.DataDefenderException;
 import com.strider.datadefender.DbConfig;
 import com.strider.datadefender.database.DatabaseException;
 import com.strider.datadefender.database.IDbFactory;
-import com.strider.datadefender.database.metadata.TableMetaData;
-import com.strider.datadefender.database.metadata.TableMetaData.ColumnMetaData;
 import com.strider.datadefender.requirement.Column;
 import com.strider.datadefender.requirement.Exclude;
 import com.strider.datadefender.requirement.Requirement;
 import com.strider.datadefender.requirement.Table;
-import com.strider.datadefender.utils.LikeMatcher;
+import com.strider.datadefender.requirement.registry.ClassAndFunctionRegistry;
+import com.strider.datadefender.requirement.registry.RandomSource;
+import com.strider.datadefender.requirement.registry.StringArena;
 
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.logging.log4j.ThreadContext;
 
 import lombok.extern.log4j.Log4j2;
 import lombok.RequiredArgsConstructor;
+import me.tongfei.progressbar.DelegatingProgressBarConsumer;
 import me.tongfei.progressbar.ProgressBar;
+import me.tongfei.progressbar.ProgressBarBuilder;
 
 /**
  * Entry point for RDBMS data anonymizer
@@ -59,11 +70,13 @@ import me.tongfei.progressbar.ProgressBar;
 public class DatabaseAnonymizer implements IAnonymizer {
 
     final IDbFactory dbFactory;
-    final DbConfig config;
-    final int batchSize;
+    final DbConfig dbConfig;
+    final AnonymizerConfig config;
     final Requirement requirement;
     final List<String> tables;
 
+    private Checkpoint checkpoint;
+
     /**
      * Adds column names from the table to the passed collection of strings.
      *
@@ -113,14 +126,26 @@ public class DatabaseAnonymizer implements IAnonymizer {
     /**
      * Creates the SELECT query for key and update columns.
      *
-     * @param tableName
+     * @param dbFactory
+     * @param table
+     * @param range the key range to select, or null for the whole table
      * @param keys
      * @param columns
+     * @param orderByKeys
+     * @param limit the maximum number of rows to select, or 0 for all of them
      * @return
      */
-    private PreparedStatement getSelectQueryStatement(final IDbFactory dbFactory, final Table table, final Collection<String> keys, final Collection<String> columns) throws SQLException {
-
-        final List<String> params = new LinkedList<>();
+    private PreparedStatement getSelectQueryStatement(
+        final IDbFactory dbFactory,
+        final Table table,
+        final KeyRange range,
+        final Collection<String> keys,
+        final Collection<String> columns,
+        final boolean orderByKeys,
+        final int limit
+    ) throws SQLException, DataDefenderException {
+
+        final List<Object> params = new LinkedList<>();
         // final StringBuilder query = new StringBuilder("SELECT DISTINCT ");
         final StringBuilder query = new StringBuilder("SELECT ");
         if (CollectionUtils.isNotEmpty(keys)) {
@@ -204,6 +229,20 @@ public class DatabaseAnonymizer implements IAnonymizer {
         if (query.indexOf(" WHERE (") != -1) {
             query.append(')');
         }
+        if (range != null) {
+            final StringBuilder condition = new StringBuilder();
+            if (range.appendCondition(condition, params)) {
+                query.append(query.indexOf(" WHERE (") != -1 ? " AND (" : " WHERE (").append(condition).append(')');
+            }
+        }
+        if (orderByKeys && CollectionUtils.isNotEmpty(keys)) {
+            query.append(" ORDER BY ").append(StringUtils.join(keys, ", "));
+        }
+        if (limit > 0) {
+            final String limited = dbFactory.createSQLBuilder().buildSelectWithLimit(query.toString(), limit);
+            query.setLength(0);
+            query.append(limited);
+        }
 
         final PreparedStatement stmt = dbFactory.getConnection().prepareStatement(
                 query.toString(),
@@ -215,8 +254,8 @@ public class DatabaseAnonymizer implements IAnonymizer {
         }
 
         int paramIndex = 1;
-        for (final String param : params) {
-            stmt.setString(paramIndex, param);
+        for (final Object param : params) {
+            stmt.setObject(paramIndex, param);
             ++paramIndex;
         }
 
@@ -229,183 +268,44 @@ public class DatabaseAnonymizer implements IAnonymizer {
     }
 
     /**
-     * Returns true if the current column's value is excluded by the rulesets
-     * defined by the Requirements.
+     * Anonymization function for a single table.
      *
-     * @param db
-     * @param row
-     * @param column
-     * @return the columns value
-     * @throws SQLException
-     */
-    private boolean isExcludedColumn(final ResultSet row, final Column column) throws SQLException {
-
-        final String columnName = column.getName();
-
-        final List<Exclude> exclusions = column.getExclusions();
-        boolean hasInclusions = false;
-        boolean passedInclusion = false;
-
-        if (exclusions != null) {
-            for (final Exclude exc : exclusions) {
-                String name = exc.getName();
-                final String eq = exc.getEquals();
-                final String lk = exc.getLike();
-                final String neq = exc.getNotEquals();
-                final String nlk = exc.getNotLike();
-                final boolean nl = exc.isExcludeNull();
-                if (name == null || name.length() == 0) {
-                    name = columnName;
-                }
-                final String testValue = row.getString(name);
-
-                if (nl && testValue == null) {
-                    return true;
-                } else if (eq != null && eq.equals(testValue)) {
-                    return true;
-                } else if (lk != null && lk.length() != 0) {
-                    final LikeMatcher matcher = new LikeMatcher(lk);
-                    if (matcher.matches(testValue)) {
-                        return true;
-                    }
-                }
-
-                if (neq != null) {
-                    hasInclusions = true;
-                    if (neq.equals(testValue)) {
-                        passedInclusion = true;
-                    }
-                }
-                if (nlk != null && nlk.length() != 0) {
-                    hasInclusions = true;
-                    final LikeMatcher matcher = new LikeMatcher(nlk);
-                    if (matcher.matches(testValue)) {
-                        passedInclusion = true;
-                    }
-                }
-            }
-        }
-
-        return hasInclusions && !passedInclusion;
-    }
-
-    /**
-     * Returns the passed colValue truncated to the column's size in the table.
+     * Sets up queries, loops over columns and anonymizes columns for the passed
+     * unit's Table, limited to rows in its KeyRange if it isn't null.
      *
-     * @param colValue
-     * @param colName
-     * @param columnMetaData
-     * @return
-     * @throws SQLException
-     */
-    private Object getTruncatedColumnValue(final Object colValue, final String colName, final TableMetaData tableMetaData) throws SQLException {
-        final ColumnMetaData col = tableMetaData.getColumn(colName);
-        final int colSize = col.getColumnSize();
-        final Class clazz = col.getColumnType();
-        if (clazz.equals(String.class) && colValue.toString().length() > colSize) {
-            return colValue.toString().substring(0, colSize);
-        }
-        return colValue;
-    }
-
-    /**
-     * Anonymizes a row of columns.
+     * If a checkpoint is kept, skips the unit if it was completed, or only
+     * anonymizes rows after the last committed one.
      *
-     * Sets query parameters on the passed updateStmt - this includes the key
-     * values - and calls anonymization functions for the columns.
+     * With a --page-size, rows are selected in key order a page at a time,
+     * each query continuing after the last key of the previous page, so no
+     * cursor is held open for the whole table.
      *
-     * @param updateStmt
-     * @param tableColumns
-     * @param keyNames
-     * @param db
-     * @param row
-     * @param columnMetaData
-     * @throws SQLException
-     * @throws NoSuchMethodException
-     * @throws SecurityException
-     * @throws IllegalAccessException
-     * @throws IllegalArgumentException
-     * @throws InvocationTargetException
+     * @param factory
+     * @param unit
      */
-    private void anonymizeRow(
-        final PreparedStatement updateStmt,
-        final Collection<Column> tableColumns,
-        final Collection<String> keyNames,
-        final ResultSet row,
-        final TableMetaData tableMetaData
-    ) throws SQLException,
-             NoSuchMethodException,
-             SecurityException,
-             IllegalAccessException,
-             IllegalArgumentException,
-             InvocationTargetException,
-             DatabaseException,
-             InstantiationException {
-
-        int fieldIndex = 0;
-        final Map<String, Integer> columnIndexes = new HashMap<>(tableColumns.size());
-        final Set<String> anonymized = new HashSet<>(tableColumns.size());
-
-        
-        log.debug("Temporary debug line: before Column loop  ");
-        
-        for (final Column column : tableColumns) {
-            final String columnName = column.getName();
-            if (anonymized.contains(columnName)) {
-                continue;
-            }
-            if (!columnIndexes.containsKey(columnName)) {
-                final int columnIndex = ++fieldIndex;
-                columnIndexes.put(columnName, columnIndex);
-            }
-            if (isExcludedColumn(row, column)) {
-                final String columnValue = row.getString(columnName);
-                updateStmt.setString(columnIndexes.get(columnName), columnValue);
-                log.debug("Excluding column: " + columnName + " with value: " + columnValue);
-                continue;
-            }
-
-            log.debug("Invoking column plan for {}", columnName);
-            anonymized.add(columnName);
-            final Object colValue = column.invokeFunctionChain(row);
-            log.debug("colValue = " + colValue);
-            log.debug("type= " + (colValue != null ? colValue.getClass() : "null"));
-            if (colValue == null) {
-                updateStmt.setNull(columnIndexes.get(columnName), Types.NULL);
-            } else {
-                updateStmt.setObject(
-                    columnIndexes.get(columnName),
-                    getTruncatedColumnValue(
-                        colValue,
-                        columnName,
-                        tableMetaData
-                    )
-                );
-            }
+    private void anonymizeTable(final IDbFactory factory, final WorkUnit unit)
+        throws DataDefenderException, InstantiationException {
+
+        final Table table = unit.table;
+        KeyRange range = unit.range;
+        final Checkpoint.Unit progress = (checkpoint == null) ? null : checkpoint.getUnit(unit.name, table, unit.range);
+        if (progress != null && progress.isComplete()) {
+            log.info("Table [" + unit.name + "] was completed in a previous run, skipping");
+            return;
         }
-
-        int whereIndex = fieldIndex;
-        for (final String key : keyNames) {
-            updateStmt.setObject(++whereIndex, row.getObject(key));
+        final Object[] lastCommitted = (progress == null) ? null : progress.getLastCommittedKeys();
+        if (lastCommitted != null) {
+            log.info("Resuming table [" + unit.name + "] after keys: " + Arrays.toString(lastCommitted));
+            log.warn("Rows of table [" + unit.name + "] committed after the checkpoint was last written, if any, "
+                + "are anonymized again");
+            range = KeyRange.after(range, table.getPrimaryKeyColumnNames(), lastCommitted);
         }
 
-        updateStmt.addBatch();
-    }
-
-    /**
-     * Anonymization function for a single table.
-     *
-     * Sets up queries, loops over columns and anonymizes columns for the passed
-     * Table.
-     *
-     * @param table
-     */
-    private void anonymizeTable(final Table table) throws DatabaseException, InstantiationException {
-
+        final String rangeInfo = (range == null) ? "" : ", range=" + range;
         if (StringUtils.isBlank(table.getWhere())) {
-            log.info("Table [" + table.getName() + "]. Start ...");
+            log.info("Table [" + table.getName() + rangeInfo + "]. Start ...");
         } else {
-            log.info("Table [" + table.getName() + ", where=" + table.getWhere() + "]. Start ...");
+            log.info("Table [" + table.getName() + ", where=" + table.getWhere() + rangeInfo + "]. Start ...");
         }
 
         final List<Column> tableColumns = table.getColumns();
@@ -419,59 +319,118 @@ public class DatabaseAnonymizer implements IAnonymizer {
         fillColumnNames(table, colNames);
 
         // required in this scope for 'catch' block
-        PreparedStatement countQuery = null;
         PreparedStatement selectStmt = null;
-        PreparedStatement updateStmt = null;
+        IRowWriter writer = null;
+        RowPipeline pipeline = null;
         ResultSet rs = null;
-        final Connection updateCon = dbFactory.getUpdateConnection();
+        final Connection updateCon = factory.getUpdateConnection();
+        final BatchSizer batches = new BatchSizer(config);
 
         try {
 
-            countQuery = getSelectQueryStatement(dbFactory, table, null, List.of("COUNT(*)"));
-            rs = countQuery.executeQuery();
-            int total = 0;
-            if (rs.next()) {
-                total = rs.getInt(1);
-            }
-            rs.close();
+            final long total = getRowCount(factory, table, range);
 
-            selectStmt = getSelectQueryStatement(dbFactory, table, keyNames, colNames);
-            rs = selectStmt.executeQuery();
+            writer = createRowWriter(factory, table, colNames, keyNames);
 
-            final TableMetaData tableMetaData = dbFactory.fetchMetaData().getMetaDataFor(rs);
+            // the reader and writer stages run on separate threads, so can't
+            // share a single connection
+            boolean pipelined = false;
+            if (config.getTransformThreads() > 0 && updateCon == factory.getConnection()) {
+                log.info("Reads and updates share a connection for {}, anonymizing rows on a single thread",
+                    factory.getVendorName());
+            } else if (config.getTransformThreads() > 0 && !RowPipeline.canRun(tableColumns)) {
+                log.info("Table {} has a plan using the ResultSet, anonymizing rows on a single thread", table.getName());
+            } else {
+                pipelined = config.getTransformThreads() > 0;
+            }
 
-            final String updateString = getUpdateQuery(table, colNames, keyNames);
-            updateStmt = updateCon.prepareStatement(updateString);
+            // keyset pagination needs keys to continue from
+            final int pageSize = CollectionUtils.isEmpty(keyNames) ? 0 : config.getPageSize();
+            final boolean orderByKeys = checkpoint != null || pageSize > 0;
+
+            long rowCount = 0;
+            try (ProgressBar pb = createTableProgressBar(table, total)) {
+                KeyRange pageRange = range;
+                RowPlan plan = null;
+                RowPlan.Rows rows = null;
+                while (true) {
+                    selectStmt = getSelectQueryStatement(factory, table, pageRange, keyNames, colNames, orderByKeys, pageSize);
+                    rs = selectStmt.executeQuery();
+
+                    if (plan == null) {
+                        plan = new RowPlan(table.getName(), tableColumns, keyNames, rs, factory.fetchMetaData().getMetaDataFor(rs));
+                        if (pipelined) {
+                            pipeline = new RowPipeline(plan, config.getTransformThreads(), batches);
+                        } else {
+                            rows = plan.newRows();
+                        }
+                    }
+
+                    long pageCount = 0;
+                    Object[] lastKeys = null;
+                    if (pipeline != null) {
+                        pageCount = pipeline.run(rs, writer, pb, progress);
+                        lastKeys = pipeline.getLastReadKeys();
+                    }
+                    // rows are read a batch at a time, so batchable plans
+                    // are invoked once for each batch
+                    while (pipeline == null) {
+                        final int batchSize = batches.getBatchSize();
+                        final int count = plan.readRows(rs, rows, batchSize);
+                        if (count == 0) {
+                            break;
+                        }
+                        plan.transformRows(rows);
+                        plan.writeRows(rows, writer.getStatement());
+                        if (orderByKeys) {
+                            lastKeys = rows.getKeys(count - 1);
+                        }
+                        pb.stepBy(count);
+                        pageCount += count;
+                        if (count < batchSize) {
+                            break;
+                        }
+                        batches.flush(writer, count);
+                        if (progress != null) {
+                            progress.commit(lastKeys);
+                        }
+                    }
 
-            int batchCounter = 0;
-            int rowCount = 0;
+                    rs.close();
+                    selectStmt.close();
+                    rowCount += pageCount;
+                    if (pageSize == 0 || pageCount < pageSize || lastKeys == null) {
+                        break;
+                    }
 
-            try (ProgressBar pb = new ProgressBar("Anonymizing table " + table.getName() + "...", total)) {
-                while (rs.next()) {
-                    anonymizeRow(updateStmt, tableColumns, keyNames, rs, tableMetaData);
-                    batchCounter++;
-                    if (batchCounter == batchSize) {
-                        updateStmt.executeBatch();
-                        updateCon.commit();
-                        batchCounter = 0;
+                    // commits the page before moving on to the next one
+                    writer.flush();
+                    if (progress != null) {
+                        progress.commit(lastKeys);
                     }
-                    pb.step();
-                    rowCount++;
+                    log.debug("Page of {} rows committed, continuing after {}", pageCount, Arrays.toString(lastKeys));
+                    pageRange = KeyRange.after(range, keyNames, lastKeys);
                 }
             }
 
             log.debug("Rows processed: " + rowCount);
+            if (batches.isAdaptive()) {
+                log.info("Table {}: {}", unit.name, batches);
+            }
+            for (final Column column : tableColumns) {
+                if (column.getResolvedPlan().isMemoized()) {
+                    log.info("Column {}.{} cache: {}", table.getName(), column.getName(), column.getCacheStats());
+                }
+            }
 
-            updateStmt.executeBatch();
-            log.debug("Batch executed");
-            updateCon.commit();
-            log.debug("Commit");
-            selectStmt.close();
-            updateStmt.close();
-            rs.close();
+            writer.flush();
+            log.debug("Batch executed and committed");
+            if (progress != null) {
+                progress.complete();
+            }
             log.debug("Closing open resources");
 
-        } catch (SQLException | NoSuchMethodException | SecurityException | IllegalAccessException |
+        } catch (SQLException | SecurityException | IllegalAccessException |
                  IllegalArgumentException | InvocationTargetException | DataDefenderException ex ) {
             log.error(ex.toString());
             if (ex.getCause() != null) {
@@ -479,15 +438,15 @@ public class DatabaseAnonymizer implements IAnonymizer {
             }
             throw new DatabaseException("Exception anonymizing table", ex);
         } finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
             try {
-                if (countQuery != null) {
-                    countQuery.close();
-                }
                 if (selectStmt != null) {
                     selectStmt.close();
                 }
-                if (updateStmt != null) {
-                    updateStmt.close();
+                if (writer != null) {
+                    writer.close();
                 }
                 if (rs != null) {
                     rs.close();
@@ -501,11 +460,263 @@ public class DatabaseAnonymizer implements IAnonymizer {
         log.info("");
     }
 
+    /**
+     * Creates the IRowWriter for the configured --write-strategy.
+     *
+     * Falls back to row updates for the staging strategy if an anonymized
+     * column is also a key, since the staged update joins on the original key
+     * values.
+     *
+     * @param factory
+     * @param table
+     * @param colNames
+     * @param keyNames
+     * @return
+     * @throws SQLException
+     * @throws DataDefenderException
+     */
+    private IRowWriter createRowWriter(
+        final IDbFactory factory,
+        final Table table,
+        final Collection<String> colNames,
+        final List<String> keyNames
+    ) throws SQLException, DataDefenderException {
+
+        final Connection updateCon = factory.getUpdateConnection();
+        if (config.getWriteStrategy() == WriteStrategy.STAGING) {
+            if (!CollectionUtils.containsAny(colNames, keyNames)) {
+                return new StagingRowWriter(
+                    updateCon,
+                    factory.createSQLBuilder(),
+                    table.getName(),
+                    keyNames,
+                    new ArrayList<>(colNames)
+                );
+            }
+            log.warn("Table {} anonymizes a key column, using row updates instead of a staging table", table.getName());
+        }
+        return new UpdateRowWriter(updateCon, getUpdateQuery(table, colNames, keyNames));
+    }
+
+    /**
+     * Returns the number of rows the passed table and range select, for the
+     * progress bar, or -1 if it isn't known.
+     *
+     * Rows are only counted if exact row counts are configured.  Otherwise
+     * the table's estimated row count is used if the whole table is
+     * selected, and the count is unknown if not.
+     *
+     * @param factory
+     * @param table
+     * @param range
+     * @return
+     * @throws SQLException
+     * @throws DataDefenderException
+     */
+    private long getRowCount(final IDbFactory factory, final Table table, final KeyRange range)
+        throws SQLException, DataDefenderException {
+
+        if (dbConfig.isExactRowCounts()) {
+            try (PreparedStatement countQuery = getSelectQueryStatement(factory, table, range, null, List.of("COUNT(*)"), false, 0);
+                ResultSet rs = countQuery.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+        if (range == null && StringUtils.isBlank(table.getWhere()) && CollectionUtils.isEmpty(table.getExclusions())) {
+            return factory.createTableStatistics().getRowCount(table.getName());
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the ProgressBar for a single table.
+     *
+     * When tables are anonymized concurrently, several bars can't share the
+     * console, so progress is instead periodically written to the log.
+     *
+     * @param table
+     * @param total the number of rows, or -1 if unknown
+     * @return
+     */
+    private ProgressBar createTableProgressBar(final Table table, final long total) {
+        final ProgressBarBuilder builder = new ProgressBarBuilder()
+            .setTaskName("Anonymizing table " + table.getName() + "...")
+            .setInitialMax(total);
+        if (config.getThreads() > 1) {
+            builder.setConsumer(new DelegatingProgressBarConsumer(log::info))
+                .setUpdateIntervalMillis(10000);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Rolls back uncommitted changes on the factory's update connection so a
+     * worker can go on to its next table after a failure.
+     *
+     * @param factory
+     */
+    private void rollbackQuietly(final IDbFactory factory) {
+        try {
+            factory.getUpdateConnection().rollback();
+        } catch (SQLException e) {
+            log.error("Error rolling back: " + e.toString());
+        }
+    }
+
+    /**
+     * Returns the units of work for the passed tables: one per table, or one
+     * per key range of a table if --partitions was set.
+     *
+     * If a table can't be partitioned, it's logged and anonymized as a whole.
+     *
+     * If a checkpoint is kept, each table's ranges are recorded in it, and
+     * ranges recorded by the run being resumed are used instead of splitting
+     * the table again, so each range covers the rows it did in that run.
+     *
+     * @param reqTables
+     * @return
+     * @throws DataDefenderException
+     */
+    private List<WorkUnit> getWorkUnits(final List<Table> reqTables) throws DataDefenderException {
+        final List<WorkUnit> units = new ArrayList<>();
+        final KeyRangePartitioner partitioner = new KeyRangePartitioner(dbFactory);
+        final int partitions = config.getPartitions();
+        for (final Table table : CollectionUtils.emptyIfNull(reqTables)) {
+            List<KeyRange> ranges = (checkpoint == null) ? null : checkpoint.getRanges(table);
+            if (ranges != null) {
+                if (ranges.size() != partitions) {
+                    log.info("Using the {} key ranges of table {} recorded in the checkpoint file",
+                        ranges.size(), table.getName());
+                }
+            } else if (partitions > 1) {
+                try {
+                    ranges = partitioner.partition(table, partitions);
+                } catch (SQLException e) {
+                    log.warn("Unable to partition table " + table.getName() + ", anonymizing it as a whole: "
+                        + e.getMessage());
+                    log.debug("Exception partitioning table " + table.getName(), e);
+                }
+            }
+            if (ranges == null || ranges.isEmpty()) {
+                ranges = List.of(new KeyRange(table.getPrimaryKeyColumnNames(), null, null));
+            }
+            if (checkpoint != null) {
+                checkpoint.setRanges(table, ranges);
+            }
+            if (ranges.size() > 1) {
+                log.info("Table {} split into {} key ranges", table.getName(), ranges.size());
+                for (int i = 0; i < ranges.size(); ++i) {
+                    units.add(new WorkUnit(
+                        table,
+                        ranges.get(i),
+                        table.getName() + " (range " + (i + 1) + "/" + ranges.size() + ")"
+                    ));
+                }
+            } else {
+                units.add(new WorkUnit(table, null, table.getName()));
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Anonymizes the passed units of work concurrently on a bounded pool of
+     * workers.
+     *
+     * Each worker opens its own IDbFactory (and so its own read and update
+     * connections), and takes the next unit off a shared queue until the
+     * queue is empty.  A failing unit is logged and recorded, and doesn't
+     * stop others from being anonymized.
+     *
+     * @param units
+     * @throws DataDefenderException if any of the units failed
+     */
+    private void anonymizeConcurrently(final List<WorkUnit> units) throws DataDefenderException {
+
+        final int nThreads = Math.min(config.getThreads(), units.size());
+        final Queue<WorkUnit> queue = new ConcurrentLinkedQueue<>(units);
+        final Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        final Map<String, String> context = ThreadContext.getImmutableContext();
+
+        log.info("Anonymizing {} tables/ranges with {} workers", units.size(), nThreads);
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try (ProgressBar pb = new ProgressBar("Anonymizing tables...", units.size())) {
+            for (int i = 0; i < nThreads; ++i) {
+                executor.execute(() -> {
+                    ThreadContext.putAll(context);
+                    try (IDbFactory workerFactory = IDbFactory.get(dbConfig)) {
+                        for (WorkUnit unit; (unit = queue.poll()) != null; ) {
+                            try {
+                                anonymizeTable(workerFactory, unit);
+                            } catch (DataDefenderException | InstantiationException | RuntimeException e) {
+                                log.error("Table [" + unit.name + "] failed: " + e.getMessage());
+                                log.debug("Exception anonymizing table " + unit.name, e);
+                                failures.put(unit.name, e);
+                                rollbackQuietly(workerFactory);
+                            }
+                            pb.setExtraMessage(unit.name);
+                            pb.step();
+                        }
+                    } catch (DataDefenderException e) {
+                        // units left in the queue are picked up by other
+                        // workers, or reported below if none remain
+                        log.error("Unable to open database connections for worker: " + e.getMessage());
+                        log.debug("Exception opening worker connections", e);
+                    } finally {
+                        ThreadContext.clearMap();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while anonymizing tables", e);
+        }
+
+        for (final WorkUnit unit : queue) {
+            failures.put(unit.name, null);
+        }
+        if (!failures.isEmpty()) {
+            throw new DatabaseException(
+                "Anonymization failed for " + failures.size() + " of " + units.size() + " tables/ranges: "
+                + StringUtils.join(failures.keySet(), ", ")
+            );
+        }
+    }
+
     @Override
     public void anonymize() throws DataDefenderException, InstantiationException {
         log.info("Anonymizing data for project: {} version: {}", requirement.getProject(), requirement.getVersion());
-        for (final Table reqTable : requirement.getFilteredTables(tables)) {
-            anonymizeTable(reqTable);
+        if (config.getCheckpointFile() != null) {
+            checkpoint = new Checkpoint(config.getCheckpointFile().toPath(), config.isResume());
+        } else if (config.isResume()) {
+            throw new DataDefenderException("--resume requires the --checkpoint-file of the run to resume");
+        }
+        ClassAndFunctionRegistry.singleton().setRandomSource(
+            (config.getSeed() == null) ? new RandomSource() : new RandomSource(config.getSeed())
+        );
+        ClassAndFunctionRegistry.singleton().setValueListBudget(
+            new StringArena.Budget(config.getValueListMemory() * 1024L * 1024L)
+        );
+        final List<WorkUnit> units = getWorkUnits(requirement.getFilteredTables(tables));
+        if (config.getThreads() > 1 && units.size() > 1) {
+            anonymizeConcurrently(units);
+            return;
+        }
+        for (final WorkUnit unit : units) {
+            anonymizeTable(dbFactory, unit);
         }
     }
+
+    /**
+     * A table, or a key range of a table, anonymized as a single task.
+     */
+    @RequiredArgsConstructor
+    private static class WorkUnit {
+        final Table table;
+        final KeyRange range;
+        final String name;
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.requirement.Column;
+import com.strider.datadefender.requirement.Exclude;
+import com.strider.datadefender.utils.LikeMatcher;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A column's Exclude rules, compiled once for the ResultSet they're tested
+ * against.
+ *
+ * Like patterns are compiled to LikeMatchers, in and not-in lists are held in
+ * HashSets, and the value each rule tests is read by its index in the
+ * ResultSet.  A row is excluded if any rule's null, equals, like or in value
+ * matches, or if there are inclusion rules (not-equals, not-like and not-in)
+ * and none of them match.
+ */
+public class ExclusionPredicate {
+
+    private static class Rule {
+        final int resultIndex;
+        final boolean excludeNull;
+        final String equals;
+        final LikeMatcher like;
+        final Set<String> in;
+        final String notEquals;
+        final LikeMatcher notLike;
+        final Set<String> notIn;
+
+        Rule(final int resultIndex, final Exclude exc) {
+            this.resultIndex = resultIndex;
+            this.excludeNull = exc.isExcludeNull();
+            this.equals = exc.getEquals();
+            this.like = StringUtils.isEmpty(exc.getLike()) ? null : new LikeMatcher(exc.getLike());
+            this.in = toSet(exc.getExcludeInList());
+            this.notEquals = exc.getNotEquals();
+            this.notLike = StringUtils.isEmpty(exc.getNotLike()) ? null : new LikeMatcher(exc.getNotLike());
+            this.notIn = toSet(exc.getExcludeNotInList());
+        }
+
+        private static Set<String> toSet(final List<String> values) {
+            return CollectionUtils.isEmpty(values) ? null : new HashSet<>(values);
+        }
+
+        boolean isInclusion() {
+            return notEquals != null || notLike != null || notIn != null;
+        }
+
+        boolean excludes(final String value) {
+            if (value == null) {
+                return excludeNull;
+            }
+            return value.equals(equals)
+                || (like != null && like.matches(value))
+                || (in != null && in.contains(value));
+        }
+
+        boolean includes(final String value) {
+            if (value == null) {
+                return false;
+            }
+            return value.equals(notEquals)
+                || (notLike != null && notLike.matches(value))
+                || (notIn != null && notIn.contains(value));
+        }
+    }
+
+    private final Rule[] rules;
+    private final boolean hasInclusions;
+
+    /**
+     * Compiles the passed column's exclusions for rs.
+     *
+     * Exclusions naming another column are tested against that column, which
+     * has to be part of the query.
+     *
+     * @param column
+     * @param rs
+     * @throws SQLException if a tested column isn't in rs
+     */
+    public ExclusionPredicate(final Column column, final ResultSet rs) throws SQLException {
+        final List<Exclude> exclusions = column.getExclusions();
+        rules = new Rule[(exclusions == null) ? 0 : exclusions.size()];
+        boolean inclusions = false;
+        for (int i = 0; i < rules.length; ++i) {
+            final Exclude exc = exclusions.get(i);
+            final String name = StringUtils.isEmpty(exc.getName()) ? column.getName() : exc.getName();
+            rules[i] = new Rule(rs.findColumn(name), exc);
+            inclusions |= rules[i].isInclusion();
+        }
+        hasInclusions = inclusions;
+    }
+
+    /**
+     * Returns true if the current row of rs is excluded from anonymization.
+     *
+     * @param rs
+     * @return
+     * @throws SQLException
+     */
+    public boolean isExcluded(final ResultSet rs) throws SQLException {
+        boolean passedInclusion = false;
+        for (final Rule rule : rules) {
+            final String value = rs.getString(rule.resultIndex);
+            if (rule.excludes(value)) {
+                return true;
+            }
+            passedInclusion = passedInclusion || rule.includes(value);
+        }
+        return hasInclusions && !passedInclusion;
+    }
+}
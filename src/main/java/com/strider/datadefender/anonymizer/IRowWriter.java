@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Writes anonymized rows back to a table.
+ *
+ * Rows are bound to the statement returned by getStatement - the anonymized
+ * column values in order, followed by the row's key values - and added with
+ * addBatch.  Calling flush writes and commits all rows added since the last
+ * call.
+ */
+public interface IRowWriter extends AutoCloseable {
+
+    /**
+     * Returns the statement rows are bound and added to.
+     *
+     * @return
+     */
+    PreparedStatement getStatement();
+
+    /**
+     * Writes and commits added rows.
+     *
+     * @throws SQLException
+     */
+    void flush() throws SQLException;
+
+    /**
+     * Releases the writer's statements, without flushing.
+     *
+     * @throws SQLException
+     */
+    @Override
+    void close() throws SQLException;
+}
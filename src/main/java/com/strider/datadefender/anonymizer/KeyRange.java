@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * A contiguous range of rows in a table, ordered by its primary key columns.
+ *
+ * The lower bound is inclusive unless created with after, and the upper
+ * bound is exclusive.  Either may be null for a range that's open on that
+ * side.  Bounds may hold fewer values
+ * than the table has key columns, in which case only the leading key columns
+ * are compared.
+ */
+@Getter
+public class KeyRange {
+
+    private final List<String> keyNames;
+    private final Object[] lower;
+    private final Object[] upper;
+    private final boolean lowerExclusive;
+
+    public KeyRange(final List<String> keyNames, final Object[] lower, final Object[] upper) {
+        this(keyNames, lower, false, upper);
+    }
+
+    private KeyRange(final List<String> keyNames, final Object[] lower, final boolean lowerExclusive, final Object[] upper) {
+        this.keyNames = keyNames;
+        this.lower = lower;
+        this.lowerExclusive = lowerExclusive;
+        this.upper = upper;
+    }
+
+    /**
+     * Returns the part of range after the passed keys, or of the whole table
+     * if range is null.
+     *
+     * @param range
+     * @param keyNames
+     * @param keys
+     * @return
+     */
+    public static KeyRange after(final KeyRange range, final List<String> keyNames, final Object[] keys) {
+        return new KeyRange(keyNames, keys, true, (range == null) ? null : range.upper);
+    }
+
+    /**
+     * Appends a condition comparing the key columns lexicographically with
+     * the passed values, and adds the values to params in the order their
+     * placeholders appear.
+     *
+     * For keys (a, b) and op "&gt;" the condition is:
+     * (a &gt; ? OR (a = ? AND b &gt; ?))
+     *
+     * Row value comparisons, e.g. (a, b) &gt; (?, ?), would be shorter but
+     * aren't supported by SQL Server or Oracle.
+     *
+     * @param sql
+     * @param keys
+     * @param op one of "&lt;", "&lt;=", "&gt;" or "&gt;=", applied in full to the
+     *  last compared column, and in its strict form to the others
+     * @param values
+     * @param params
+     */
+    public static void appendComparison(
+        final StringBuilder sql,
+        final List<String> keys,
+        final String op,
+        final Object[] values,
+        final List<Object> params
+    ) {
+        final String strict = op.substring(0, 1);
+        final int last = Math.min(keys.size(), values.length) - 1;
+        for (int i = 0; i < last; ++i) {
+            sql.append('(').append(keys.get(i)).append(' ').append(strict).append(" ? OR (")
+                .append(keys.get(i)).append(" = ? AND ");
+            params.add(values[i]);
+            params.add(values[i]);
+        }
+        sql.append(keys.get(last)).append(' ').append(op).append(" ?");
+        params.add(values[last]);
+        for (int i = 0; i < last; ++i) {
+            sql.append("))");
+        }
+    }
+
+    /**
+     * Appends the SQL condition selecting rows in this range.
+     *
+     * @param sql
+     * @param params
+     * @return false if the range is unbounded and nothing was appended
+     */
+    public boolean appendCondition(final StringBuilder sql, final List<Object> params) {
+        if (lower != null) {
+            appendComparison(sql, keyNames, lowerExclusive ? ">" : ">=", lower, params);
+        }
+        if (upper != null) {
+            if (lower != null) {
+                sql.append(" AND ");
+            }
+            appendComparison(sql, keyNames, "<", upper, params);
+        }
+        return lower != null || upper != null;
+    }
+
+    @Override
+    public String toString() {
+        return (lowerExclusive ? "(" : "[") + (lower == null ? "" : Arrays.toString(lower)) + ", "
+            + (upper == null ? "" : Arrays.toString(upper)) + ")";
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.database.IDbFactory;
+import com.strider.datadefender.requirement.Table;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.extern.log4j.Log4j2;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Splits a table into disjoint key ranges that can be anonymized
+ * independently.
+ *
+ * If the leading primary key column holds integers, split points are evenly
+ * spaced between its MIN and MAX values, and only the leading column is
+ * compared.  Otherwise, split points are the first keys of NTILE buckets
+ * over the primary key columns, producing ranges of equal row counts
+ * without reading the table's rows, or a single range if the database
+ * doesn't support window functions.
+ *
+ * Together, the returned ranges always cover the whole table: the first is
+ * open below and the last open above.
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class KeyRangePartitioner {
+
+    private final IDbFactory factory;
+
+    /**
+     * Returns up to the passed number of key ranges for the table, or a
+     * single unbounded range if the table can't be split.
+     *
+     * @param table
+     * @param partitions
+     * @return
+     * @throws SQLException
+     */
+    public List<KeyRange> partition(final Table table, final int partitions) throws SQLException {
+        final List<String> keys = table.getPrimaryKeyColumnNames();
+        List<Object[]> splits = new ArrayList<>();
+        if (partitions > 1 && !keys.isEmpty()) {
+            splits = getNumericSplitPoints(table, keys.get(0), partitions);
+            if (splits == null) {
+                splits = getSampledSplitPoints(table, keys, partitions);
+            }
+        }
+
+        final List<KeyRange> ranges = new ArrayList<>(splits.size() + 1);
+        Object[] lower = null;
+        for (final Object[] split : splits) {
+            ranges.add(new KeyRange(keys, lower, split));
+            lower = split;
+        }
+        ranges.add(new KeyRange(keys, lower, null));
+        log.debug("Partitioned table {} into ranges: {}", table.getName(), ranges);
+        return ranges;
+    }
+
+    private String getWhereClause(final Table table) {
+        if (StringUtils.isBlank(table.getWhere())) {
+            return "";
+        }
+        return " WHERE (" + table.getWhere() + ")";
+    }
+
+    private static boolean isIntegral(final Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short
+            || value instanceof Byte || value instanceof BigInteger) {
+            return true;
+        }
+        if (value instanceof BigDecimal) {
+            final BigDecimal dec = (BigDecimal) value;
+            return dec.signum() == 0 || dec.stripTrailingZeros().scale() <= 0;
+        }
+        return false;
+    }
+
+    private static BigInteger toBigInteger(final Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toBigInteger();
+        } else if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        }
+        return BigInteger.valueOf(((Number) value).longValue());
+    }
+
+    /**
+     * Returns evenly spaced split points between the MIN and MAX values of
+     * the passed column, or null if the column doesn't hold integers.
+     */
+    private List<Object[]> getNumericSplitPoints(final Table table, final String key, final int partitions)
+        throws SQLException {
+
+        final String sql = "SELECT MIN(" + key + "), MAX(" + key + ") FROM " + table.getName() + getWhereClause(table);
+        log.debug("Querying for key bounds: {}", sql);
+        Object min;
+        Object max;
+        try (PreparedStatement stmt = factory.getConnection().prepareStatement(sql);
+            ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                return new ArrayList<>();
+            }
+            min = rs.getObject(1);
+            max = rs.getObject(2);
+        }
+        if (min == null || max == null) {
+            // empty table
+            return new ArrayList<>();
+        }
+        if (!isIntegral(min) || !isIntegral(max)) {
+            return null;
+        }
+
+        final boolean asLong = !(min instanceof BigDecimal || min instanceof BigInteger);
+        final BigInteger lo = toBigInteger(min);
+        final BigInteger span = toBigInteger(max).subtract(lo).add(BigInteger.ONE);
+        final BigInteger n = BigInteger.valueOf(partitions).min(span);
+
+        final List<Object[]> splits = new ArrayList<>();
+        for (long i = 1; i < n.longValue(); ++i) {
+            final BigInteger split = lo.add(span.multiply(BigInteger.valueOf(i)).divide(n));
+            splits.add(new Object[] { asLong ? (Object) split.longValue() : new BigDecimal(split) });
+        }
+        return splits;
+    }
+
+    /**
+     * Returns split points of equal row counts, as the first key of each but
+     * the first of NTILE(partitions) buckets over the primary key columns.
+     *
+     * Only the split points are returned by the database.  If it doesn't
+     * support window functions, no split points are returned and the table
+     * is anonymized as a single range.
+     */
+    private List<Object[]> getSampledSplitPoints(final Table table, final List<String> keys, final int partitions)
+        throws SQLException {
+
+        final String cols = StringUtils.join(keys, ", ");
+        final String sql = "SELECT " + cols + " FROM ("
+            + "SELECT " + cols + ", dd_tile, "
+            + "ROW_NUMBER() OVER (PARTITION BY dd_tile ORDER BY " + cols + ") AS dd_first"
+            + " FROM (SELECT " + cols + ", NTILE(" + partitions + ") OVER (ORDER BY " + cols + ") AS dd_tile"
+            + " FROM " + table.getName() + getWhereClause(table) + ") dd_tiles"
+            + ") dd_firsts WHERE dd_first = 1 AND dd_tile > 1 ORDER BY " + cols;
+        log.debug("Querying for split points: {}", sql);
+
+        final Connection conn = factory.getConnection();
+        final List<Object[]> splits = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+            ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                final Object[] split = new Object[keys.size()];
+                for (int i = 0; i < split.length; ++i) {
+                    split[i] = rs.getObject(i + 1);
+                }
+                splits.add(split);
+            }
+        } catch (SQLException e) {
+            log.warn("Unable to query split points of table {}, anonymizing it as a single range: {}",
+                table.getName(), e.getMessage());
+            log.debug("Exception querying split points", e);
+            // a failed statement aborts the transaction on some databases
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+            }
+            splits.clear();
+        }
+        return splits;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.DataDefenderException;
+import com.strider.datadefender.database.DatabaseException;
+import com.strider.datadefender.requirement.Column;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import lombok.extern.log4j.Log4j2;
+import me.tongfei.progressbar.ProgressBar;
+
+/**
+ * Anonymizes the rows of a single table in three stages connected by bounded
+ * queues, so reading, anonymization functions and updates overlap:
+ *
+ * <ul>
+ *   <li>a reader thread drains the ResultSet, checks exclusions and copies
+ *   the key and column values out of the current row</li>
+ *   <li>transform threads invoke the column plans on the copied values</li>
+ *   <li>a writer thread binds results to the IRowWriter's statement, and
+ *   flushes it whenever a batch is full, as sized by the BatchSizer</li>
+ * </ul>
+ *
+ * Rows are written in whatever order transforms finish, which doesn't matter
+ * since each update is keyed by the row's primary key.  When a checkpoint is
+ * kept, the keys recorded after a commit are those of the last row read for
+ * which it and all rows read before it have been committed.  The queues hold at
+ * most the initial batch size's rows each, so the reader blocks when the other
+ * stages fall behind.
+ *
+ * The stages' threads are started once, and re-used by each call to run for
+ * the pages of a table, until the pipeline is closed.
+ *
+ * Columns with plans that take the ResultSet itself can't be run this way -
+ * see Column.isResultSetPlan.
+ */
+@Log4j2
+public class RowPipeline implements AutoCloseable {
+
+    /**
+     * A row copied out of the ResultSet.  Each entry in values is either the
+     * starting value for the RowPlan candidate at the same index in plans, or
+     * the original value as a String if plans has -1 at that index because
+     * the column was excluded.
+     */
+    private static class Row {
+        final long seq;
+        final Object[] keys;
+        final Object[] values;
+        final int[] plans;
+
+        Row(final long seq, final int keys, final int columns) {
+            this.seq = seq;
+            this.keys = new Object[keys];
+            this.values = new Object[columns];
+            this.plans = new int[columns];
+        }
+    }
+
+    private static final Row END = new Row(-1, 0, 0);
+
+    private final RowPlan plan;
+    private final int transformThreads;
+    private final BatchSizer batches;
+    private final ExecutorService executor;
+
+    private volatile Object[] lastReadKeys;
+
+    /**
+     * Sets up the pipeline for the passed plan.
+     *
+     * The writer's statement is expected to take the columns in the plan's
+     * order, followed by the keys.
+     *
+     * @param plan
+     * @param transformThreads
+     * @param batches
+     */
+    public RowPipeline(final RowPlan plan, final int transformThreads, final BatchSizer batches) {
+        this.plan = plan;
+        this.transformThreads = Math.max(1, transformThreads);
+        this.batches = batches;
+        this.executor = Executors.newFixedThreadPool(this.transformThreads + 2);
+    }
+
+    /**
+     * Returns true if none of the passed columns use a plan that needs the
+     * ResultSet.
+     *
+     * @param tableColumns
+     * @return
+     */
+    public static boolean canRun(final List<Column> tableColumns) {
+        return tableColumns.stream().noneMatch(Column::isResultSetPlan);
+    }
+
+    /**
+     * Returns the key values of the last row read by the most recent call to
+     * run, or null if it didn't read any rows.
+     *
+     * @return
+     */
+    public Object[] getLastReadKeys() {
+        return lastReadKeys;
+    }
+
+    /**
+     * Runs all rows in rs through the pipeline, returning once they've all
+     * been written and committed.
+     *
+     * @param rs
+     * @param writer
+     * @param pb
+     * @param progress the checkpoint to record committed keys in, or null
+     * @return the number of rows processed
+     * @throws DatabaseException if any of the stages failed
+     */
+    public long run(final ResultSet rs, final IRowWriter writer, final ProgressBar pb, final Checkpoint.Unit progress) throws DatabaseException {
+
+        final int capacity = batches.getBatchSize();
+        final BlockingQueue<Row> transformQueue = new ArrayBlockingQueue<>(capacity);
+        final BlockingQueue<Row> writeQueue = new ArrayBlockingQueue<>(capacity);
+        final Map<String, String> context = ThreadContext.getImmutableContext();
+        final CompletionService<Long> stages = new ExecutorCompletionService<>(executor);
+        final List<Future<Long>> futures = new ArrayList<>(transformThreads + 2);
+        lastReadKeys = null;
+
+        futures.add(stages.submit(withContext(context, () -> read(rs, transformQueue))));
+        for (int i = 0; i < transformThreads; ++i) {
+            futures.add(stages.submit(withContext(context, () -> transform(transformQueue, writeQueue))));
+        }
+        futures.add(stages.submit(withContext(context, () -> write(writeQueue, writer, pb, progress))));
+
+        long rowCount = 0;
+        try {
+            for (int i = 0; i < futures.size(); ++i) {
+                rowCount = Math.max(rowCount, stages.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while anonymizing rows", e);
+        } catch (ExecutionException e) {
+            throw new DatabaseException("Exception in anonymization pipeline", e.getCause());
+        } finally {
+            // stops the remaining stages if one of them failed
+            for (final Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return rowCount;
+    }
+
+    /**
+     * Stops the stages' threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static <T> Callable<T> withContext(final Map<String, String> context, final Callable<T> stage) {
+        return () -> {
+            ThreadContext.putAll(context);
+            try {
+                return stage.call();
+            } finally {
+                ThreadContext.clearMap();
+            }
+        };
+    }
+
+    private Long read(final ResultSet rs, final BlockingQueue<Row> out) throws Exception {
+        long count = 0;
+        while (rs.next()) {
+            final Row row = new Row(count, plan.getKeyCount(), plan.getColumnCount());
+            plan.readKeys(rs, row.keys);
+            for (int i = 0; i < row.values.length; ++i) {
+                row.plans[i] = plan.select(rs, i);
+                row.values[i] = plan.read(rs, i, row.plans[i]);
+            }
+            out.put(row);
+            lastReadKeys = row.keys;
+            ++count;
+        }
+        for (int i = 0; i < transformThreads; ++i) {
+            out.put(END);
+        }
+        return count;
+    }
+
+    private Long transform(final BlockingQueue<Row> in, final BlockingQueue<Row> out) throws Exception {
+        for (Row row; (row = in.take()) != END; ) {
+            for (int i = 0; i < row.values.length; ++i) {
+                if (row.plans[i] >= 0) {
+                    row.values[i] = plan.transform(i, row.plans[i], row.values[i], row.keys);
+                }
+            }
+            out.put(row);
+        }
+        out.put(END);
+        return 0L;
+    }
+
+    private Long write(
+        final BlockingQueue<Row> in,
+        final IRowWriter writer,
+        final ProgressBar pb,
+        final Checkpoint.Unit progress
+    ) throws Exception {
+
+        final PreparedStatement updateStmt = writer.getStatement();
+        final List<Row> batch = new ArrayList<>();
+        final TreeMap<Long, Object[]> committed = new TreeMap<>();
+        long nextSeq = 0;
+        long count = 0;
+        int batchCounter = 0;
+        int ended = 0;
+        while (ended < transformThreads) {
+            final Row row = in.take();
+            if (row == END) {
+                ++ended;
+                continue;
+            }
+            for (int i = 0; i < row.values.length; ++i) {
+                plan.bind(updateStmt, i, row.plans[i], row.values[i]);
+            }
+            plan.bindKeys(updateStmt, row.keys);
+            updateStmt.addBatch();
+            if (progress != null) {
+                batch.add(row);
+            }
+            if (++batchCounter >= batches.getBatchSize()) {
+                batches.flush(writer, batchCounter);
+                nextSeq = checkpoint(progress, batch, committed, nextSeq);
+                batchCounter = 0;
+            }
+            pb.step();
+            ++count;
+        }
+        if (batchCounter > 0) {
+            writer.flush();
+            checkpoint(progress, batch, committed, nextSeq);
+        }
+        return count;
+    }
+
+    /**
+     * Records the keys of the last row read for which all rows up to and
+     * including it have been committed, after a flush of the passed batch.
+     *
+     * Committed rows read after a row that hasn't been committed yet are kept
+     * in committed until the gap is filled.
+     *
+     * @return the sequence number of the next row expected to be committed
+     */
+    private static long checkpoint(
+        final Checkpoint.Unit progress,
+        final List<Row> batch,
+        final TreeMap<Long, Object[]> committed,
+        long nextSeq
+    ) throws DataDefenderException {
+
+        if (progress == null) {
+            return nextSeq;
+        }
+        for (final Row row : batch) {
+            committed.put(row.seq, row.keys);
+        }
+        batch.clear();
+        Object[] lastKeys = null;
+        while (!committed.isEmpty() && committed.firstKey() == nextSeq) {
+            lastKeys = committed.pollFirstEntry().getValue();
+            ++nextSeq;
+        }
+        if (lastKeys != null) {
+            progress.commit(lastKeys);
+        }
+        return nextSeq;
+    }
+}
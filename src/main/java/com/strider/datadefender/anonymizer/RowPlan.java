@@ -0,0 +1,535 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.database.metadata.TableMetaData;
+import com.strider.datadefender.database.metadata.TableMetaData.ColumnMetaData;
+import com.strider.datadefender.requirement.Column;
+import com.strider.datadefender.requirement.registry.ClassAndFunctionRegistry;
+import com.strider.datadefender.requirement.registry.RandomSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Everything needed to anonymize the rows of a query that doesn't change from
+ * one row to the next, resolved once after the query is executed.
+ *
+ * Columns are grouped by name in the order their names first appear in the
+ * table's columns, which is also the order they're bound to the update
+ * statement, followed by the keys.  Each group holds the column's index in the
+ * ResultSet, the size values are truncated to if it's a character column, and
+ * its candidate Columns with their compiled exclusions - the first one not
+ * excluded for a row anonymizes it.
+ * If all of them are excluded, the original value is written back as a
+ * String.
+ *
+ * Values are bound with the setter matching the type the Column's functions
+ * convert their result to, falling back to setObject for values of another
+ * type.
+ *
+ * Rows can be anonymized one at a time, or read into {@link Rows} and
+ * anonymized together so a candidate whose plan is batchable is invoked once
+ * for all of the rows it anonymizes.
+ *
+ * If the registry's RandomSource is seeded, its generator is reset for each
+ * row and column from the table and column names and the row's keys before
+ * the column is anonymized, and plans are invoked one row at a time, so a
+ * row's values don't depend on the rows anonymized before it.
+ */
+@Log4j2
+public class RowPlan {
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement stmt, int index, Object value) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface TypedBinder<T> {
+        void bind(PreparedStatement stmt, int index, T value) throws SQLException;
+    }
+
+    private static class Slot {
+        final String name;
+        final int resultIndex;
+        final int truncateTo;
+        final Column[] plans;
+        final ExclusionPredicate[] exclusions;
+        final boolean[] resultSetPlans;
+        final boolean[] batchable;
+        final Binder[] binders;
+
+        Slot(
+            final String name,
+            final int resultIndex,
+            final int truncateTo,
+            final List<Column> plans,
+            final ResultSet rs
+        ) throws SQLException {
+            this.name = name;
+            this.resultIndex = resultIndex;
+            this.truncateTo = truncateTo;
+            this.plans = plans.toArray(new Column[plans.size()]);
+            this.exclusions = new ExclusionPredicate[this.plans.length];
+            this.resultSetPlans = new boolean[this.plans.length];
+            this.batchable = new boolean[this.plans.length];
+            this.binders = new Binder[this.plans.length];
+            for (int i = 0; i < this.plans.length; ++i) {
+                exclusions[i] = new ExclusionPredicate(this.plans[i], rs);
+                resultSetPlans[i] = this.plans[i].isResultSetPlan();
+                batchable[i] = !resultSetPlans[i] && this.plans[i].isBatchable();
+                binders[i] = binderFor(this.plans[i].getType());
+            }
+        }
+    }
+
+    /**
+     * A batch of rows read by readRows, held by column.  Each value is stored
+     * with the index of the candidate anonymizing it, -1 if all of them are
+     * excluded, and whether it has already been transformed.
+     */
+    public static class Rows {
+        private Object[][] values;
+        private int[][] plans;
+        private boolean[][] transformed;
+        private Object[][] keys;
+        private int size;
+
+        private Rows(final int columns, final int keyCount) {
+            values = new Object[columns][0];
+            plans = new int[columns][0];
+            transformed = new boolean[columns][0];
+            keys = new Object[keyCount][0];
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (values.length > 0 && values[0].length >= capacity) {
+                return;
+            }
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = Arrays.copyOf(values[i], capacity);
+                plans[i] = Arrays.copyOf(plans[i], capacity);
+                transformed[i] = Arrays.copyOf(transformed[i], capacity);
+            }
+            for (int k = 0; k < keys.length; ++k) {
+                keys[k] = Arrays.copyOf(keys[k], capacity);
+            }
+        }
+
+        /**
+         * Returns the number of rows read.
+         *
+         * @return
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns a copy of the key values of the passed row.
+         *
+         * @param row
+         * @return
+         */
+        public Object[] getKeys(final int row) {
+            final Object[] rowKeys = new Object[keys.length];
+            for (int k = 0; k < keys.length; ++k) {
+                rowKeys[k] = keys[k][row];
+            }
+            return rowKeys;
+        }
+    }
+
+    private final String tableName;
+    private final Slot[] slots;
+    private final int[] keyIndexes;
+    private final RandomSource random = ClassAndFunctionRegistry.singleton().getRandomSource();
+
+    /**
+     * Resolves the passed columns and keys against the ResultSet they'll be
+     * read from.
+     *
+     * @param tableName
+     * @param tableColumns
+     * @param keyNames
+     * @param rs
+     * @param tableMetaData metadata for rs, as returned by getMetaDataFor
+     * @throws SQLException
+     */
+    public RowPlan(
+        final String tableName,
+        final List<Column> tableColumns,
+        final List<String> keyNames,
+        final ResultSet rs,
+        final TableMetaData tableMetaData
+    ) throws SQLException {
+
+        this.tableName = tableName;
+        final Map<String, List<Column>> byName = new LinkedHashMap<>();
+        for (final Column column : tableColumns) {
+            byName.computeIfAbsent(column.getName(), (k) -> new ArrayList<>()).add(column);
+        }
+        slots = new Slot[byName.size()];
+        int i = 0;
+        for (final Map.Entry<String, List<Column>> entry : byName.entrySet()) {
+            final int index = rs.findColumn(entry.getKey());
+            final ColumnMetaData meta = tableMetaData.getColumn(index);
+            final int truncateTo = String.class.equals(meta.getColumnType()) ? meta.getColumnSize() : -1;
+            slots[i++] = new Slot(entry.getKey(), index, truncateTo, entry.getValue(), rs);
+        }
+        keyIndexes = new int[keyNames.size()];
+        for (int k = 0; k < keyIndexes.length; ++k) {
+            keyIndexes[k] = rs.findColumn(keyNames.get(k));
+        }
+    }
+
+    private static <T> Binder typed(final Class<T> type, final TypedBinder<T> setter) {
+        return (stmt, index, value) -> {
+            if (type.isInstance(value)) {
+                setter.bind(stmt, index, type.cast(value));
+            } else {
+                stmt.setObject(index, value);
+            }
+        };
+    }
+
+    private static Binder binderFor(final Class<?> type) {
+        if (String.class.equals(type)) {
+            return typed(String.class, PreparedStatement::setString);
+        } else if (Integer.class.equals(type) || int.class.equals(type)) {
+            return typed(Integer.class, PreparedStatement::setInt);
+        } else if (Long.class.equals(type) || long.class.equals(type)) {
+            return typed(Long.class, PreparedStatement::setLong);
+        } else if (Short.class.equals(type) || short.class.equals(type)) {
+            return typed(Short.class, PreparedStatement::setShort);
+        } else if (Double.class.equals(type) || double.class.equals(type)) {
+            return typed(Double.class, PreparedStatement::setDouble);
+        } else if (Float.class.equals(type) || float.class.equals(type)) {
+            return typed(Float.class, PreparedStatement::setFloat);
+        } else if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+            return typed(Boolean.class, PreparedStatement::setBoolean);
+        } else if (BigDecimal.class.equals(type)) {
+            return typed(BigDecimal.class, PreparedStatement::setBigDecimal);
+        } else if (Timestamp.class.equals(type)) {
+            return typed(Timestamp.class, PreparedStatement::setTimestamp);
+        } else if (Date.class.equals(type)) {
+            return typed(Date.class, PreparedStatement::setDate);
+        } else if (Time.class.equals(type)) {
+            return typed(Time.class, PreparedStatement::setTime);
+        }
+        return PreparedStatement::setObject;
+    }
+
+    /**
+     * Returns the number of distinct columns bound for each row.
+     *
+     * @return
+     */
+    public int getColumnCount() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the number of key columns bound after the columns.
+     *
+     * @return
+     */
+    public int getKeyCount() {
+        return keyIndexes.length;
+    }
+
+    /**
+     * Returns the index of the first candidate for column i that isn't
+     * excluded for the current row of rs, or -1 if all of them are.
+     *
+     * @param rs
+     * @param i
+     * @return
+     * @throws SQLException
+     */
+    public int select(final ResultSet rs, final int i) throws SQLException {
+        final ExclusionPredicate[] exclusions = slots[i].exclusions;
+        for (int p = 0; p < exclusions.length; ++p) {
+            if (!exclusions[p].isExcluded(rs)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if candidate p of column i is passed the ResultSet rather
+     * than the column's value.
+     *
+     * @param i
+     * @param p
+     * @return
+     */
+    public boolean isResultSetPlan(final int i, final int p) {
+        return slots[i].resultSetPlans[p];
+    }
+
+    /**
+     * Reads column i of the current row of rs, as the type of candidate p, or
+     * as a String if p is -1.
+     *
+     * @param rs
+     * @param i
+     * @param p
+     * @return
+     * @throws SQLException
+     */
+    public Object read(final ResultSet rs, final int i, final int p) throws SQLException {
+        final Slot slot = slots[i];
+        if (p < 0) {
+            return rs.getString(slot.resultIndex);
+        }
+        return rs.getObject(slot.resultIndex, slot.plans[p].getType());
+    }
+
+    /**
+     * Reads the key values of the current row of rs into keys.
+     *
+     * @param rs
+     * @param keys
+     * @throws SQLException
+     */
+    public void readKeys(final ResultSet rs, final Object[] keys) throws SQLException {
+        for (int k = 0; k < keyIndexes.length; ++k) {
+            keys[k] = rs.getObject(keyIndexes[k]);
+        }
+    }
+
+    /**
+     * Invokes candidate p of column i on value, which is the ResultSet for
+     * result set plans, returning the result truncated to the column's size.
+     *
+     * @param i
+     * @param p
+     * @param value
+     * @param keys the row's key values, used to seed random values
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public Object transform(final int i, final int p, final Object value, final Object[] keys)
+        throws SQLException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        final Slot slot = slots[i];
+        if (random.isSeeded() && keyIndexes.length > 0) {
+            random.startRow(tableName, slot.name, keys);
+        }
+        return truncate(slot, slot.plans[p].invokeFunctionChainWithValue(value));
+    }
+
+    private static Object truncate(final Slot slot, final Object colValue) {
+        if (colValue != null && slot.truncateTo >= 0) {
+            final String str = colValue.toString();
+            if (str.length() > slot.truncateTo) {
+                return str.substring(0, slot.truncateTo);
+            }
+        }
+        return colValue;
+    }
+
+    /**
+     * Binds value as column i, using candidate p's setter, or setString for
+     * the original value of an excluded column if p is -1.
+     *
+     * @param stmt
+     * @param i
+     * @param p
+     * @param value
+     * @throws SQLException
+     */
+    public void bind(final PreparedStatement stmt, final int i, final int p, final Object value) throws SQLException {
+        if (p < 0) {
+            stmt.setString(i + 1, (String) value);
+        } else if (value == null) {
+            stmt.setNull(i + 1, Types.NULL);
+        } else {
+            slots[i].binders[p].bind(stmt, i + 1, value);
+        }
+    }
+
+    /**
+     * Binds the passed key values after the columns.
+     *
+     * @param stmt
+     * @param keys
+     * @throws SQLException
+     */
+    public void bindKeys(final PreparedStatement stmt, final Object[] keys) throws SQLException {
+        for (int k = 0; k < keys.length; ++k) {
+            stmt.setObject(slots.length + k + 1, keys[k]);
+        }
+    }
+
+    /**
+     * Returns an empty batch of rows for readRows.
+     *
+     * @return
+     */
+    public Rows newRows() {
+        return new Rows(slots.length, keyIndexes.length);
+    }
+
+    /**
+     * Reads up to max rows from rs into rows, replacing the rows it held, and
+     * returns the number read.
+     *
+     * The candidate anonymizing each column is selected as the row is read,
+     * and result set plans are invoked right away, since rs moves on to the
+     * next row.
+     *
+     * @param rs
+     * @param rows
+     * @param max
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public int readRows(final ResultSet rs, final Rows rows, final int max)
+        throws SQLException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        rows.ensureCapacity(max);
+        rows.size = 0;
+        while (rows.size < max && rs.next()) {
+            final int r = rows.size;
+            for (int k = 0; k < keyIndexes.length; ++k) {
+                rows.keys[k][r] = rs.getObject(keyIndexes[k]);
+            }
+            for (int i = 0; i < slots.length; ++i) {
+                final int p = select(rs, i);
+                rows.plans[i][r] = p;
+                if (p < 0) {
+                    rows.values[i][r] = read(rs, i, p);
+                    rows.transformed[i][r] = true;
+                    log.debug("Excluding column: {} with value: {}", slots[i].name, rows.values[i][r]);
+                } else if (isResultSetPlan(i, p)) {
+                    rows.values[i][r] = transform(i, p, rs, keysFor(rows, r));
+                    rows.transformed[i][r] = true;
+                } else {
+                    rows.values[i][r] = read(rs, i, p);
+                    rows.transformed[i][r] = false;
+                }
+            }
+            ++rows.size;
+        }
+        return rows.size;
+    }
+
+    /**
+     * Anonymizes the values read by readRows that haven't been transformed
+     * yet.  Values anonymized by a batchable candidate are passed to it in a
+     * single call, others are transformed one at a time.
+     *
+     * @param rows
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public void transformRows(final Rows rows)
+        throws SQLException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        for (int i = 0; i < slots.length; ++i) {
+            final Slot slot = slots[i];
+            final Object[] values = rows.values[i];
+            final int[] plans = rows.plans[i];
+            final boolean[] transformed = rows.transformed[i];
+            for (int p = 0; p < slot.plans.length; ++p) {
+                int count = 0;
+                for (int r = 0; r < rows.size; ++r) {
+                    if (plans[r] == p && !transformed[r]) {
+                        ++count;
+                    }
+                }
+                if (count == 0) {
+                    continue;
+                }
+                if (!slot.batchable[p] || random.isSeeded()) {
+                    for (int r = 0; r < rows.size; ++r) {
+                        if (plans[r] == p && !transformed[r]) {
+                            values[r] = transform(i, p, values[r], keysFor(rows, r));
+                            transformed[r] = true;
+                        }
+                    }
+                    continue;
+                }
+                final Object[] inputs = new Object[count];
+                for (int r = 0, j = 0; r < rows.size; ++r) {
+                    if (plans[r] == p && !transformed[r]) {
+                        inputs[j++] = values[r];
+                    }
+                }
+                final Object[] results = slot.plans[p].invokeFunctionChainWithValues(inputs);
+                for (int r = 0, j = 0; r < rows.size; ++r) {
+                    if (plans[r] == p && !transformed[r]) {
+                        values[r] = truncate(slot, results[j++]);
+                        transformed[r] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of row r if needed to seed random values, or null.
+     */
+    private Object[] keysFor(final Rows rows, final int r) {
+        return random.isSeeded() ? rows.getKeys(r) : null;
+    }
+
+    /**
+     * Binds each of the rows anonymized by transformRows and their keys to
+     * stmt, adding them to the batch.
+     *
+     * @param rows
+     * @param stmt
+     * @throws SQLException
+     */
+    public void writeRows(final Rows rows, final PreparedStatement stmt) throws SQLException {
+        for (int r = 0; r < rows.size; ++r) {
+            for (int i = 0; i < slots.length; ++i) {
+                bind(stmt, i, rows.plans[i][r], rows.values[i][r]);
+            }
+            for (int k = 0; k < keyIndexes.length; ++k) {
+                stmt.setObject(slots.length + k + 1, rows.keys[k][r]);
+            }
+            stmt.addBatch();
+        }
+    }
+}
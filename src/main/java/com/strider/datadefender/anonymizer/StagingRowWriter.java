@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.database.sqlbuilder.ISqlBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Inserts rows into a temporary staging table, and on each flush applies
+ * them to the table with a single set-based update joining on the keys.
+ *
+ * The staging table is created with the key and anonymized columns of the
+ * table when the writer is constructed, and released when it's closed.  SQL
+ * for each vendor comes from ISqlBuilder.
+ *
+ * The staging table is named after a hash of the table and staged columns.
+ * Temporary tables are private to a session on most vendors, so writers on
+ * other connections can use the same name.  On Oracle, where the table's
+ * definition is permanent, this means it's created once for each table and
+ * re-used by later runs rather than left behind.
+ */
+@Log4j2
+public class StagingRowWriter implements IRowWriter {
+
+    private final Connection updateCon;
+    private final ISqlBuilder sqlBuilder;
+    private final String stagingTable;
+    private final String stagedUpdate;
+    @Getter
+    private final PreparedStatement statement;
+
+    /**
+     * Creates the staging table and prepares the insert statement.
+     *
+     * @param updateCon
+     * @param sqlBuilder
+     * @param tableName
+     * @param keys
+     * @param columns
+     * @throws SQLException
+     */
+    public StagingRowWriter(
+        final Connection updateCon,
+        final ISqlBuilder sqlBuilder,
+        final String tableName,
+        final List<String> keys,
+        final List<String> columns
+    ) throws SQLException {
+
+        this.updateCon = updateCon;
+        this.sqlBuilder = sqlBuilder;
+        final List<String> stagedColumns = new ArrayList<>(columns);
+        stagedColumns.addAll(keys);
+        this.stagingTable = sqlBuilder.getStagingTableName(getStagingTableBaseName(tableName, stagedColumns));
+        final String create = sqlBuilder.buildCreateStagingTable(stagingTable, tableName, stagedColumns);
+        log.debug("Creating staging table: {}", create);
+        try (Statement stmt = updateCon.createStatement()) {
+            stmt.execute(create);
+        }
+        updateCon.commit();
+
+        this.stagedUpdate = sqlBuilder.buildStagedUpdate(tableName, stagingTable, keys, columns);
+        this.statement = updateCon.prepareStatement(
+            "INSERT INTO " + stagingTable + " (" + StringUtils.join(stagedColumns, ", ") + ") VALUES (?"
+            + StringUtils.repeat(", ?", stagedColumns.size() - 1) + ")"
+        );
+    }
+
+    /**
+     * Returns "dd_stg_" followed by 16 hex digits of a hash of the table's
+     * name and the staged columns, short enough for Oracle's 30 character
+     * identifiers.
+     *
+     * @param tableName
+     * @param stagedColumns
+     * @return
+     */
+    static String getStagingTableBaseName(final String tableName, final List<String> stagedColumns) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                (tableName + "|" + StringUtils.join(stagedColumns, ",")).getBytes(StandardCharsets.UTF_8)
+            );
+            return "dd_stg_" + String.format("%016x", ByteBuffer.wrap(digest).getLong());
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Inserts added rows into the staging table, applies them to the table,
+     * empties the staging table and commits.
+     *
+     * @throws SQLException
+     */
+    @Override
+    public void flush() throws SQLException {
+        statement.executeBatch();
+        try (Statement stmt = updateCon.createStatement()) {
+            stmt.executeUpdate(stagedUpdate);
+            stmt.executeUpdate("DELETE FROM " + stagingTable);
+        }
+        updateCon.commit();
+    }
+
+    /**
+     * Closes the insert statement and releases the staging table.
+     *
+     * Anything not yet flushed is rolled back first, since some databases
+     * won't run further statements in a transaction that's had an error.
+     *
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+        updateCon.rollback();
+        try (Statement stmt = updateCon.createStatement()) {
+            stmt.execute(sqlBuilder.buildReleaseStagingTable(stagingTable));
+        }
+        updateCon.commit();
+    }
+}
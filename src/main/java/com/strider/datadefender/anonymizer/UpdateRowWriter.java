@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import lombok.Getter;
+
+/**
+ * Writes each row with its own "UPDATE ... WHERE key = ?" statement, sent
+ * to the database in batches.
+ */
+public class UpdateRowWriter implements IRowWriter {
+
+    private final Connection updateCon;
+    @Getter
+    private final PreparedStatement statement;
+
+    public UpdateRowWriter(final Connection updateCon, final String updateQuery) throws SQLException {
+        this.updateCon = updateCon;
+        this.statement = updateCon.prepareStatement(updateQuery);
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        statement.executeBatch();
+        updateCon.commit();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+}
@@ -17,8 +17,6 @@ package com.strider.datadefender.anonymizer.functions;
 
 import java.io.IOException;
 
-import org.apache.commons.lang3.RandomUtils;
-
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -79,16 +77,16 @@ public class Address extends Core {
     }
 
     public String randomCanadianOrUsFiveDigitPostalCode() {
-        if (RandomUtils.nextBoolean()) {
+        if (getRandom().nextBoolean()) {
             return randomCanadianPostalCode();
         }
         return randomUsZipCode();
     }
 
     public String randomCanadianOrUsFiveOrNineDigitPostalCode() {
-        if (RandomUtils.nextBoolean()) {
+        if (getRandom().nextBoolean()) {
             return randomCanadianPostalCode();
-        } else if (RandomUtils.nextBoolean()) {
+        } else if (getRandom().nextBoolean()) {
             return randomUsZipCode();
         
         }
@@ -15,13 +15,12 @@
  */
 package com.strider.datadefender.anonymizer.functions;
 
+import com.strider.datadefender.functions.Deterministic;
 import com.strider.datadefender.functions.NamedParameter;
-import com.strider.datadefender.utils.Encoder;
 
 import java.io.IOException;
 
 import lombok.extern.log4j.Log4j2;
-import org.apache.commons.lang3.RandomUtils;
 
 /**
  * Built-in anonymization helper functions for personal bio data.
@@ -31,15 +30,26 @@ import org.apache.commons.lang3.RandomUtils;
 @Log4j2
 public class Bio extends Core {
 
+    @Deterministic
     public String randomFirstName(@NamedParameter("fistName") String firstName) {
         
         log.debug("Executing function randomFirstNameD");
-        String detFirstName = new Encoder().encrypt(firstName, this.getHash());
+        String detFirstName = getEncryptionEngine().encrypt(firstName);
         log.debug("detFirstName = " + detFirstName);
         log.debug("detFirstName.length() = " + detFirstName.length());
         
         return detFirstName;        
     }
+
+    /**
+     * Batch counterpart of randomFirstName(String).
+     *
+     * @param firstNames
+     * @return
+     */
+    public String[] randomFirstNameBatch(String[] firstNames) {
+        return getEncryptionEngine().encryptBatch(firstNames);
+    }
     
     public String randomFirstName() throws IOException {
 		return randomStringFromStream(
@@ -48,6 +58,14 @@ public class Bio extends Core {
         );
     }
 
+    public String[] randomFirstNameBatch(int count) throws IOException {
+        return randomStringsFromStream(
+            "resource:first_names.txt",
+            () -> Lipsum.class.getResourceAsStream("first_names.txt"),
+            count
+        );
+    }
+
     public String randomLastName() throws IOException {
         return randomStringFromStream(
             "resource:last_names.txt",
@@ -55,25 +73,55 @@ public class Bio extends Core {
         );
     }
 
+    public String[] randomLastNameBatch(int count) throws IOException {
+        return randomStringsFromStream(
+            "resource:last_names.txt",
+            () -> Lipsum.class.getResourceAsStream("last_names.txt"),
+            count
+        );
+    }
+
+    @Deterministic
     public String randomLastName(@NamedParameter("lastName") String lastName) {
         
         log.debug("Executing function randomLastNameD");
-        String detLastName = new Encoder().encrypt(lastName, this.getHash());
+        String detLastName = getEncryptionEngine().encrypt(lastName);
         log.debug("detLastName = " + detLastName);
         log.debug("detLastName.length() = " + detLastName.length());
         
         return detLastName;        
     }
+
+    /**
+     * Batch counterpart of randomLastName(String).
+     *
+     * @param lastNames
+     * @return
+     */
+    public String[] randomLastNameBatch(String[] lastNames) {
+        return getEncryptionEngine().encryptBatch(lastNames);
+    }
     
+    @Deterministic
     public String randomReversibleValue(@NamedParameter("value") String value) {
         
         log.debug("Executing function randomReversibleString");
-        String destValue = new Encoder().encrypt(value, this.getHash());
+        String destValue = getEncryptionEngine().encrypt(value);
         log.debug("destValue = " + destValue);
         log.debug("destValue.length() = " + destValue.length());
         
         return destValue;        
     }    
+
+    /**
+     * Batch counterpart of randomReversibleValue.
+     *
+     * @param values
+     * @return
+     */
+    public String[] randomReversibleValueBatch(String[] values) {
+        return getEncryptionEngine().encryptBatch(values);
+    }
     
     public String randomMiddleName(final String file) throws IOException {
         return randomFirstName();
@@ -86,7 +134,7 @@ public class Bio extends Core {
      * @return
      */
     public String randomUser() {
-        return randomUser(10, RandomUtils.nextInt(0, 3));
+        return randomUser(10, getRandom().nextInt(0, 3));
     }
 
     /**
@@ -104,9 +152,9 @@ public class Bio extends Core {
      */
     public String randomUser(@NamedParameter("maxCharacters") int maxCharacters, @NamedParameter("numDigits") int numDigits) {
         int maxWords = (int) Math.ceil(maxCharacters / 10d);
-        int numWords = (maxWords > 1) ? RandomUtils.nextInt(1, maxWords + 1) : 1;
+        int numWords = (maxWords > 1) ? getRandom().nextInt(1, maxWords + 1) : 1;
         String user = randomString(numWords, maxCharacters).toLowerCase().replaceAll("[^a-z ]", "").replace(" ", "_");
-        String digits = (numDigits > 0) ? Integer.toString(RandomUtils.nextInt(0, (int) Math.pow(10, numDigits))) : "";
+        String digits = (numDigits > 0) ? Integer.toString(getRandom().nextInt(0, (int) Math.pow(10, numDigits))) : "";
         return user + ("0".repeat(numDigits) + digits).substring(digits.length());
     }
 
@@ -119,7 +167,7 @@ public class Bio extends Core {
      * @return
      */
     public String randomEmail(@NamedParameter("domainName") String domainName) {
-        return randomEmail(domainName, 20, RandomUtils.nextInt(0, 3));
+        return randomEmail(domainName, 20, getRandom().nextInt(0, 3));
     }
 
     /**
@@ -145,12 +193,23 @@ public class Bio extends Core {
      * @param domainName
      * @return
      */
+    @Deterministic
     public String randomEncryptedEmail(@NamedParameter("email") String email) {
         log.debug("Executing function randomEncryptedEmail");
-        String detEmail = new Encoder().encrypt(email, this.getHash());
+        String detEmail = getEncryptionEngine().encrypt(email);
         log.debug("detEmail = " + detEmail);
         log.debug("detEmail.length() = " + detEmail.length());
         
         return detEmail;
     }    
+
+    /**
+     * Batch counterpart of randomEncryptedEmail.
+     *
+     * @param emails
+     * @return
+     */
+    public String[] randomEncryptedEmailBatch(String[] emails) {
+        return getEncryptionEngine().encryptBatch(emails);
+    }
 }
@@ -16,7 +16,10 @@
 package com.strider.datadefender.anonymizer.functions;
 
 import com.strider.datadefender.functions.NamedParameter;
+import com.strider.datadefender.requirement.registry.RandomSource;
 import com.strider.datadefender.requirement.registry.RequirementFunction;
+import com.strider.datadefender.requirement.registry.ShuffledLists;
+import com.strider.datadefender.utils.EncryptionEngine;
 import com.strider.datadefender.utils.Xeger;
 
 import java.io.InputStreamReader;
@@ -25,20 +28,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Iterator;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
 
-import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import lombok.extern.log4j.Log4j2;
@@ -51,8 +50,7 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class Core extends RequirementFunction {
 
-    private static final Map<String, List<String>> stringLists = new HashMap<>();
-    private static final Map<String, Iterator<String>> stringIters = new HashMap<>();
+    private static final ShuffledLists stringLists = new ShuffledLists();
     private static final  List<String> words = new ArrayList<>();
     private static String hash = null;
     
@@ -87,29 +85,6 @@ public class Core extends RequirementFunction {
         }
     }    
 
-    /**
-     * Returns the next shuffled item from the named collection.
-     *
-     * @param String name
-     * @return String
-     */
-    private String getNextShuffledItemFor(@NamedParameter("name") String name) {
-        if (stringIters.containsKey(name)) {
-            final Iterator<String> iter = stringIters.get(name);
-            if (iter.hasNext()) {
-                return iter.next();
-            }
-            // else shuffle again
-        }
-
-        final List<String> list = stringLists.get(name);
-        Collections.shuffle(list);
-
-        final Iterator<String> iter = list.iterator();
-        stringIters.put(name, iter);
-        return iter.next();
-    }
-
     /**
      * Generates a list of random strings from a list of strings (new-
      * line separated) in a file.The function randomizes the collection, exhausting all possible values
@@ -121,7 +96,31 @@ public class Core extends RequirementFunction {
      * @throws IOException
      */
     protected String randomStringFromStream(String id, InputStreamSupplier supplier) throws IOException {
-        if (!stringLists.containsKey(id)) {
+        loadStream(id, supplier);
+        return stringLists.next(id);
+    }
+
+    /**
+     * Batch counterpart of randomStringFromStream, returning count strings
+     * from the stream.
+     *
+     * @param id
+     * @param supplier
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    protected String[] randomStringsFromStream(String id, InputStreamSupplier supplier, int count) throws IOException {
+        loadStream(id, supplier);
+        final String[] values = new String[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = stringLists.next(id);
+        }
+        return values;
+    }
+
+    private void loadStream(String id, InputStreamSupplier supplier) throws IOException {
+        stringLists.load(id, () -> {
             log.info("Loading words from stream {}", id);
             final List<String> values = new ArrayList<>();
             InputStream stream = supplier.getInputStream();
@@ -133,9 +132,8 @@ public class Core extends RequirementFunction {
                     values.add(line);
                 }
             }
-            stringLists.put(id, values);
-        }
-        return getNextShuffledItemFor(id);
+            return values;
+        });
     }
 
     /**
@@ -143,24 +141,35 @@ public class Core extends RequirementFunction {
      * line separated) in a file.
      *
      * The function randomizes the collection, exhausting all possible values
-     * before re-shuffling and re-using items.
+     * before re-shuffling and re-using items.  The file is memory-mapped and
+     * indexed (see MappedDictionary) rather than loaded on the heap.
      *
      * @param file the file name
      * @return A random string from the file
      * @throws java.io.IOException
      */
     public String randomStringFromFile(String file) throws IOException {
-        if (!stringLists.containsKey(file)) {
+        if (!stringLists.contains(file)) {
             log.info("Loading words from file: {}", file);
-            final List<String> values = new ArrayList<>();
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                for (String line; (line = br.readLine()) != null; ) {
-                    values.add(line);
-                }
-            }
-            stringLists.put(file, values);
+            stringLists.loadFile(file, Paths.get(file));
+        }
+        return stringLists.next(file);
+    }
+
+    /**
+     * Batch counterpart of randomStringFromFile.
+     *
+     * @param count
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public String[] randomStringFromFileBatch(int count, String file) throws IOException {
+        final String[] values = new String[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = randomStringFromFile(file);
         }
-        return getNextShuffledItemFor(file);
+        return values;
     }
 
     /**
@@ -178,11 +187,64 @@ public class Core extends RequirementFunction {
         @NamedParameter("end") String end,
         @NamedParameter("format") String format
     ) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern(format);
-        LocalDate ds = LocalDate.parse(start, fmt);
-        LocalDate de = LocalDate.parse(end, fmt);
-        long day = RandomUtils.nextLong(0, de.toEpochDay() - ds.toEpochDay()) + ds.toEpochDay();
-        return LocalDate.ofEpochDay(day).format(fmt);
+        final DateRange range = DateRange.ofDates(start, end, format);
+        return range.randomDate(getRandom()).format(range.getFormatter());
+    }
+
+    /**
+     * Generates a random date between the passed start and end dates, parsed
+     * with the passed format.
+     *
+     * Unlike randomDate, the date is returned as is rather than formatted, and
+     * the parsed start and end dates are cached.
+     *
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    public LocalDate randomLocalDate(
+        @NamedParameter("start") String start,
+        @NamedParameter("end") String end,
+        @NamedParameter("format") String format
+    ) {
+        return DateRange.ofDates(start, end, format).randomDate(getRandom());
+    }
+
+    /**
+     * Generates a random java.sql.Date between the passed start and end dates,
+     * parsed with the passed format, for DATE columns.
+     *
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    public Date randomSqlDate(
+        @NamedParameter("start") String start,
+        @NamedParameter("end") String end,
+        @NamedParameter("format") String format
+    ) {
+        return Date.valueOf(randomLocalDate(start, end, format));
+    }
+
+    /**
+     * Batch counterpart of randomSqlDate.
+     *
+     * @param count
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    public Date[] randomSqlDateBatch(int count, String start, String end, String format) {
+        final DateRange range = DateRange.ofDates(start, end, format);
+        final RandomSource random = getRandom();
+        final Date[] values = new Date[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = Date.valueOf(range.randomDate(random));
+        }
+        return values;
     }
 
     /**
@@ -200,11 +262,64 @@ public class Core extends RequirementFunction {
         @NamedParameter("end") String end,
         @NamedParameter("format") String format
     ) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern(format);
-        LocalDateTime ds = LocalDateTime.parse(start, fmt);
-        LocalDateTime de = LocalDateTime.parse(end, fmt);
-        long day = RandomUtils.nextLong(0, de.toEpochSecond(ZoneOffset.UTC) - ds.toEpochSecond(ZoneOffset.UTC)) + ds.toEpochSecond(ZoneOffset.UTC);
-        return LocalDateTime.ofEpochSecond(day, 0, ZoneOffset.UTC).format(fmt);
+        final DateRange range = DateRange.ofDateTimes(start, end, format);
+        return range.randomDateTime(getRandom()).format(range.getFormatter());
+    }
+
+    /**
+     * Generates a random date-time between the passed start and end
+     * date-times, parsed with the passed format.
+     *
+     * Unlike randomDateTime, the date-time is returned as is rather than
+     * formatted, and the parsed start and end date-times are cached.
+     *
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    public LocalDateTime randomLocalDateTime(
+        @NamedParameter("start") String start,
+        @NamedParameter("end") String end,
+        @NamedParameter("format") String format
+    ) {
+        return DateRange.ofDateTimes(start, end, format).randomDateTime(getRandom());
+    }
+
+    /**
+     * Generates a random java.sql.Timestamp between the passed start and end
+     * date-times, parsed with the passed format, for TIMESTAMP columns.
+     *
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    public Timestamp randomTimestamp(
+        @NamedParameter("start") String start,
+        @NamedParameter("end") String end,
+        @NamedParameter("format") String format
+    ) {
+        return Timestamp.valueOf(randomLocalDateTime(start, end, format));
+    }
+
+    /**
+     * Batch counterpart of randomTimestamp.
+     *
+     * @param count
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    public Timestamp[] randomTimestampBatch(int count, String start, String end, String format) {
+        final DateRange range = DateRange.ofDateTimes(start, end, format);
+        final RandomSource random = getRandom();
+        final Timestamp[] values = new Timestamp[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = Timestamp.valueOf(range.randomDateTime(random));
+        }
+        return values;
     }
 
     /**
@@ -219,7 +334,7 @@ public class Core extends RequirementFunction {
     public String randomString(@NamedParameter("num") int num, @NamedParameter("length") int length) {
         final StringBuilder randomString = new StringBuilder();
         for (int i = 0; i < num && randomString.length() < length; ++i) {
-            final int r = RandomUtils.nextInt(0, words.size());
+            final int r = getRandom().nextInt(0, words.size());
             randomString.append(words.get(r)).append(' ');
         }
         if (randomString.length() > length) {
@@ -228,6 +343,22 @@ public class Core extends RequirementFunction {
         return randomString.toString().trim();
     }
 
+    /**
+     * Batch counterpart of randomString.
+     *
+     * @param count
+     * @param num
+     * @param length
+     * @return
+     */
+    public String[] randomStringBatch(int count, int num, int length) {
+        final String[] values = new String[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = randomString(num, length);
+        }
+        return values;
+    }
+
     /**
      * Generates a String from the passed regex that is guaranteed to match it.
      *
@@ -235,14 +366,30 @@ public class Core extends RequirementFunction {
      * @return
      */
     public String randomStringFromPattern(@NamedParameter("pattern") String pattern) {
-        final Xeger instance = new Xeger(pattern);
-        return instance.generate();
+        return Xeger.forPattern(pattern).generate(getRandom().asRandom());
+    }
+
+    /**
+     * Batch counterpart of randomStringFromPattern.
+     *
+     * @param count
+     * @param pattern
+     * @return
+     */
+    public String[] randomStringFromPatternBatch(int count, String pattern) {
+        final Xeger instance = Xeger.forPattern(pattern);
+        final Random random = getRandom().asRandom();
+        final String[] values = new String[count];
+        for (int i = 0; i < count; ++i) {
+            values[i] = instance.generate(random);
+        }
+        return values;
     }
     
     public String randomIpAddress() {
         
         StringBuilder ipAddress = new StringBuilder();
-        Random r = new Random();
+        final RandomSource r = getRandom();
         
         ipAddress.append(Integer.toString(r.nextInt(256))).
                 append(".").
@@ -257,7 +404,7 @@ public class Core extends RequirementFunction {
     }
     
     public String randomGeoLocation() {
-        double val = new Random().nextDouble();
+        double val = getRandom().nextDouble();
         return Double.toString(val);
     }    
     
@@ -268,8 +415,17 @@ public class Core extends RequirementFunction {
         }
         return hash;
     }
+
+    /**
+     * Returns the encryption engine keyed by the hash.
+     *
+     * @return
+     */
+    protected EncryptionEngine getEncryptionEngine() {
+        return EncryptionEngine.forSecret(getHash());
+    }
     
     public int randomNumber(@NamedParameter("min") int min, @NamedParameter("max") int max) {
-        return (int) (Math.random()*(max-min)) + min;
+        return (int) (getRandom().nextDouble()*(max-min)) + min;
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer.functions;
+
+import com.strider.datadefender.requirement.registry.RandomSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A range of dates or date-times parsed from strings with a format, cached by
+ * start, end and format so random values can be generated without parsing
+ * them again.
+ *
+ * The range is kept as epoch days for dates, and epoch seconds (in UTC) for
+ * date-times.
+ */
+final class DateRange {
+
+    private static final ConcurrentMap<List<String>, DateRange> dates = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<List<String>, DateRange> dateTimes = new ConcurrentHashMap<>();
+
+    private final DateTimeFormatter formatter;
+    private final long start;
+    private final long end;
+
+    private DateRange(final DateTimeFormatter formatter, final long start, final long end) {
+        this.formatter = formatter;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the range of dates between start and end, parsed with format.
+     *
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    static DateRange ofDates(final String start, final String end, final String format) {
+        return dates.computeIfAbsent(List.of(start, end, format), (k) -> {
+            final DateTimeFormatter fmt = DateTimeFormatter.ofPattern(format);
+            return new DateRange(fmt, LocalDate.parse(start, fmt).toEpochDay(), LocalDate.parse(end, fmt).toEpochDay());
+        });
+    }
+
+    /**
+     * Returns the range of date-times between start and end, parsed with
+     * format.
+     *
+     * @param start
+     * @param end
+     * @param format
+     * @return
+     */
+    static DateRange ofDateTimes(final String start, final String end, final String format) {
+        return dateTimes.computeIfAbsent(List.of(start, end, format), (k) -> {
+            final DateTimeFormatter fmt = DateTimeFormatter.ofPattern(format);
+            return new DateRange(
+                fmt,
+                LocalDateTime.parse(start, fmt).toEpochSecond(ZoneOffset.UTC),
+                LocalDateTime.parse(end, fmt).toEpochSecond(ZoneOffset.UTC)
+            );
+        });
+    }
+
+    DateTimeFormatter getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * Returns a random date from start (inclusive) to end (exclusive) of a
+     * range of dates.
+     *
+     * @param random
+     * @return
+     */
+    LocalDate randomDate(final RandomSource random) {
+        return LocalDate.ofEpochDay(random.nextLong(0, end - start) + start);
+    }
+
+    /**
+     * Returns a random date-time from start (inclusive) to end (exclusive) of
+     * a range of date-times, in whole seconds.
+     *
+     * @param random
+     * @return
+     */
+    LocalDateTime randomDateTime(final RandomSource random) {
+        return LocalDateTime.ofEpochSecond(random.nextLong(0, end - start) + start, 0, ZoneOffset.UTC);
+    }
+}
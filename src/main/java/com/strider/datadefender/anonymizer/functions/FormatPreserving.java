@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer.functions;
+
+import com.strider.datadefender.functions.Deterministic;
+import com.strider.datadefender.functions.NamedParameter;
+import com.strider.datadefender.utils.FormatPreservingEngine;
+
+/**
+ * Reversible anonymization keeping the length and format of values, so they
+ * fit the original column.
+ *
+ * Digits are encrypted into digits and letters into letters (keeping their
+ * case) with FF1 format-preserving encryption, keyed by the hash, while other
+ * characters are kept.  Suited to identifiers like SINs, phone or account
+ * numbers, see {@link FormatPreservingEngine}.
+ */
+public class FormatPreserving extends Core {
+
+    private FormatPreservingEngine getEngine() {
+        return FormatPreservingEngine.forSecret(getHash());
+    }
+
+    /**
+     * Returns the encryption of the passed value, of the same length and
+     * format.
+     *
+     * @param value
+     * @return
+     */
+    @Deterministic
+    public String encrypt(@NamedParameter("value") String value) {
+        return getEngine().encrypt(value);
+    }
+
+    /**
+     * Batch counterpart of encrypt.
+     *
+     * @param values
+     * @return
+     */
+    public String[] encryptBatch(String[] values) {
+        return getEngine().encryptBatch(values);
+    }
+
+    /**
+     * Returns the original value of one returned by encrypt.
+     *
+     * @param value
+     * @return
+     */
+    @Deterministic
+    public String decrypt(@NamedParameter("value") String value) {
+        return getEngine().decrypt(value);
+    }
+
+    /**
+     * Batch counterpart of decrypt.
+     *
+     * @param values
+     * @return
+     */
+    public String[] decryptBatch(String[] values) {
+        return getEngine().decryptBatch(values);
+    }
+}
@@ -16,6 +16,7 @@
 package com.strider.datadefender.anonymizer.functions;
 
 import com.strider.datadefender.functions.NamedParameter;
+import com.strider.datadefender.requirement.registry.RandomSource;
 import com.strider.datadefender.requirement.registry.RequirementFunction;
 
 import java.io.InputStreamReader;
@@ -23,9 +24,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
-
-import org.apache.commons.lang3.StringUtils;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -37,9 +35,20 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class Lipsum extends RequirementFunction {
 
-    private Random rand = new Random();
     private static final List<String> lipsumParagraphs = new ArrayList<>();
 
+    /**
+     * Sentences of lipsumParagraphs, split on '.', trimmed and with spaces
+     * normalized, in order.  Empty strings are kept where a paragraph has
+     * consecutive '.' characters.  Sentences of paragraph p start at
+     * paragraphStarts[p].
+     */
+    private static final String[] lipsumSentences;
+    private static final int[] paragraphStarts;
+
+    private static final int MAX_BUFFER_SIZE = 8192;
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(StringBuilder::new);
+
     static {
         final BufferedReader br = new BufferedReader(new InputStreamReader(Lipsum.class.getResourceAsStream("lipsum.txt")));
         final StringBuilder sb = new StringBuilder();
@@ -56,6 +65,47 @@ public class Lipsum extends RequirementFunction {
             log.fatal("Error initializing lipsum.txt", ex);
             System.exit(1);
         }
+
+        final List<String> sentences = new ArrayList<>();
+        paragraphStarts = new int[lipsumParagraphs.size()];
+        for (int p = 0; p < paragraphStarts.length; ++p) {
+            paragraphStarts[p] = sentences.size();
+            for (final String s : lipsumParagraphs.get(p).split("\\.")) {
+                sentences.add(s.trim().replaceAll("\\s+", " "));
+            }
+        }
+        lipsumSentences = sentences.toArray(new String[sentences.size()]);
+    }
+
+    /**
+     * Returns the current thread's cleared buffer.
+     */
+    private static StringBuilder buffer() {
+        final StringBuilder sb = buffers.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * Returns the buffer's contents, trimmed if trim is set, and releases the
+     * buffer if it grew too large to be kept.
+     */
+    private static String release(final StringBuilder sb, final boolean trim) {
+        int from = 0;
+        int to = sb.length();
+        if (trim) {
+            while (from < to && sb.charAt(from) <= ' ') {
+                ++from;
+            }
+            while (to > from && sb.charAt(to - 1) <= ' ') {
+                --to;
+            }
+        }
+        final String text = sb.substring(from, to);
+        if (sb.capacity() > MAX_BUFFER_SIZE) {
+            buffers.remove();
+        }
+        return text;
     }
 
     /**
@@ -74,34 +124,27 @@ public class Lipsum extends RequirementFunction {
         @NamedParameter("pattern") int min,
         @NamedParameter("pattern") int max
     ) throws IOException {
+        final StringBuilder sb = buffer();
+        appendSentences(sb, min, max);
+        return release(sb, false);
+    }
 
-        final List<String> lp = lipsumParagraphs;
-        final StringBuilder sb = new StringBuilder();
-
+    private void appendSentences(final StringBuilder sb, final int min, final int max) {
+        final RandomSource rand = getRandom();
         final int nSentences = max - rand.nextInt((max + 1) - min);
+        final String[] sentences = lipsumSentences;
         String separator = "";
-        mainLoop:
-        for (int i = 0, start = rand.nextInt(lp.size()); i < nSentences; ++start) {
-            final String para = lp.get(start % lp.size());
-            final String[] sentences = para.split("\\.");
-            for (String s : sentences) {
-                s = s.trim().replaceAll("\\s+", " ");
-                if (s.isEmpty()) {
-                    sb.append('.');
-                    continue;
-                }
-
-                sb.append(separator).append(s).append('.');
-                separator = " ";
-                ++i;
-
-                if (i == nSentences) {
-                    break mainLoop;
-                }
+        for (int i = 0, k = paragraphStarts[rand.nextInt(paragraphStarts.length)]; i < nSentences; ) {
+            final String s = sentences[k];
+            k = (k + 1 == sentences.length) ? 0 : k + 1;
+            if (s.isEmpty()) {
+                sb.append('.');
+                continue;
             }
+            sb.append(separator).append(s).append('.');
+            separator = " ";
+            ++i;
         }
-
-        return sb.toString();
     }
 
     /**
@@ -118,11 +161,11 @@ public class Lipsum extends RequirementFunction {
      */
     public String paragraphs(@NamedParameter("paragraphs") int paragraphs) throws IOException {
         final List<String> lp = lipsumParagraphs;
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0, start = rand.nextInt(lp.size()); i < paragraphs; ++i, ++start) {
+        final StringBuilder sb = buffer();
+        for (int i = 0, start = getRandom().nextInt(lp.size()); i < paragraphs; ++i, ++start) {
             sb.append(lp.get(start % lp.size())).append("\r\n\r\n");
         }
-        return sb.toString().trim();
+        return release(sb, true);
     }
 
     /**
@@ -138,20 +181,59 @@ public class Lipsum extends RequirementFunction {
      * @throws IOException if an error occurs reading from the lipsum text file
      */
     public String similar(@NamedParameter("text") String text) throws IOException {
-        final String sParas = text.replaceAll("\r\n", "\n");
-        final int nParas = StringUtils.countMatches(sParas, "\n");
-        if (nParas > 0) {
-            final StringBuilder sb = new StringBuilder();
-            for (final String para : sParas.split("\n")) {
-                if (para.trim().isEmpty()) {
-                    sb.append("\r\n");
-                    continue;
+        final StringBuilder sb = buffer();
+        final int length = text.length();
+        if (text.indexOf('\n') < 0) {
+            appendSimilarSentences(sb, countSentences(text, 0, length));
+            return release(sb, false);
+        }
+        // each line ("\r\n" or "\n" separated) is a paragraph
+        for (int from = 0; from <= length; ) {
+            int to = text.indexOf('\n', from);
+            final int next = (to < 0) ? length + 1 : to + 1;
+            if (to < 0) {
+                to = length;
+            } else if (to > from && text.charAt(to - 1) == '\r') {
+                --to;
+            }
+            final int nSent = countSentences(text, from, to);
+            if (nSent < 0) {
+                sb.append("\r\n");
+            } else {
+                appendSimilarSentences(sb, nSent);
+                sb.append("\r\n");
+            }
+            from = next;
+        }
+        return release(sb, true);
+    }
+
+    private void appendSimilarSentences(final StringBuilder sb, final int nSent) {
+        appendSentences(sb, Math.max(1, nSent - 1), Math.max(1, nSent + 1));
+    }
+
+    /**
+     * Returns the number of sentences between from and to in text, counted
+     * as the number of runs of '.' characters, or -1 if it's blank.
+     */
+    private static int countSentences(final String text, final int from, final int to) {
+        int count = 0;
+        boolean blank = true;
+        boolean inDots = false;
+        for (int i = from; i < to; ++i) {
+            final char c = text.charAt(i);
+            if (c > ' ') {
+                blank = false;
+            }
+            if (c == '.') {
+                if (!inDots) {
+                    ++count;
                 }
-                sb.append(similar(para)).append("\r\n");
+                inDots = true;
+            } else {
+                inDots = false;
             }
-            return sb.toString().trim();
         }
-        final int nSent = StringUtils.countMatches(text.replaceAll("\\.{2,}", "."), ".");
-        return sentences(Math.max(1, nSent - 1), Math.max(1, nSent + 1));
+        return blank ? -1 : count;
     }
 }
@@ -15,23 +15,29 @@
  */
 package com.strider.datadefender.anonymizer.functions;
 
+import com.strider.datadefender.functions.Deterministic;
 import com.strider.datadefender.functions.NamedParameter;
+import com.strider.datadefender.requirement.registry.ClassAndFunctionRegistry;
 import com.strider.datadefender.requirement.registry.DatabaseAwareRequirementFunction;
+import com.strider.datadefender.requirement.registry.IndexPermutation;
+import com.strider.datadefender.requirement.registry.RandomSource;
+import com.strider.datadefender.requirement.registry.ShuffledLists;
+import com.strider.datadefender.requirement.registry.StringArena;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Iterator;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
-import org.apache.commons.collections4.IterableUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import lombok.extern.log4j.Log4j2;
@@ -44,32 +50,148 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class Table extends DatabaseAwareRequirementFunction {
 
-    private static final Map<String, List<String>> stringLists = new HashMap<>();
-    private static final Map<String, Iterator<String>> stringIters = new HashMap<>();
-    private static final Map<String, Map<String, String>> predictableShuffle = new HashMap<>();
-    private static final Map<String, Map<String, String>> predictableLipsumShuffle = new HashMap<>();
-    private static final Lipsum lipsum = new Lipsum();
+    private static final ShuffledLists stringLists = new ShuffledLists();
 
     /**
-     * Returns the next shuffled item from the named collection.
+     * Mapping of a list of values to a shuffled list of target values.
      *
-     * @param name
-     * @return
+     * Values stay in their StringArena, and are found by an open-addressed
+     * table of their positions in it, hashed and compared by their UTF-8
+     * bytes.  Values are mapped to the value at the same position of an
+     * IndexPermutation of the list, or to targets generated from those values
+     * kept in a second StringArena, so Strings are only created for the
+     * returned values.
      */
-    private String getNextShuffledItemFor(final String name) {
-        if (stringIters.containsKey(name)) {
-            final Iterator<String> iter = stringIters.get(name);
-            if (iter.hasNext()) {
-                return iter.next();
+    private static final class PredictableShuffle {
+
+        @FunctionalInterface
+        interface Target {
+            String of(String value) throws IOException;
+        }
+
+        private final StringArena values;
+        private final int[] slots;
+        private final int[] permutation;
+        private final StringArena targets;
+
+        /**
+         * Maps the value at each position i of list to the value at position
+         * i of an IndexPermutation of the list for the passed key, or to its
+         * target if target isn't null.
+         */
+        PredictableShuffle(
+            final List<String> list,
+            final long key,
+            final Target target,
+            final StringArena.Budget budget
+        ) throws IOException {
+            values = (list instanceof StringArena) ? (StringArena) list : StringArena.of(list, budget);
+            final int size = values.size();
+            slots = new int[Integer.highestOneBit(Math.max(1, size) * 2 - 1) * 2];
+            final int mask = slots.length - 1;
+            for (int i = 0; i < size; ++i) {
+                int slot = values.hash(i) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = i + 1;
+            }
+
+            final IndexPermutation order = new IndexPermutation(size, key);
+            if (target == null) {
+                permutation = new int[size];
+                for (int i = 0; i < size; ++i) {
+                    permutation[i] = order.get(i);
+                }
+                targets = values;
+            } else {
+                final StringArena.Builder builder = new StringArena.Builder(budget);
+                for (int i = 0; i < size; ++i) {
+                    builder.add(target.of(values.get(order.get(i))));
+                }
+                permutation = null;
+                targets = builder.build();
             }
         }
 
-        final List<String> list = stringLists.get(name);
-        Collections.shuffle(list);
+        private int positionOf(final byte[] utf8) {
+            final int mask = slots.length - 1;
+            for (int slot = StringArena.hash(utf8) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (values.equalsAt(slots[slot] - 1, utf8)) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
 
-        final Iterator<String> iter = list.iterator();
-        stringIters.put(name, iter);
-        return iter.next();
+        String get(final String value) {
+            if (values.isEmpty()) {
+                throw new IllegalStateException("No values to shuffle");
+            }
+            int position = positionOf((value == null) ? null : value.getBytes(StandardCharsets.UTF_8));
+            if (position < 0) {
+                position = (int) (Math.abs((long) Objects.hashCode(value)) % values.size());
+            }
+            return targets.get((permutation == null) ? position : permutation[position]);
+        }
+    }
+
+    /**
+     * Mappings of values to shuffled values, shared by all threads so a value
+     * is mapped to the same shuffled value by each of them.  Mappings aren't
+     * modified once created.
+     */
+    private static final Map<String, PredictableShuffle> predictableShuffle = new ConcurrentHashMap<>();
+    private static final Map<String, PredictableShuffle> predictableLipsumShuffle = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a Lipsum drawing its random values from the passed source
+     * rather than the registry's.
+     *
+     * @param random
+     * @return
+     */
+    static Lipsum lipsumFor(final RandomSource random) {
+        return new Lipsum() {
+            @Override
+            protected RandomSource getRandom() {
+                return random;
+            }
+        };
+    }
+
+    /**
+     * Returns the mapping for the list with the passed name, creating it if
+     * it doesn't exist yet.
+     *
+     * The permutation, and the random values drawn by target, come from a
+     * generator for the list's name, so they don't depend on the row that
+     * happens to create the mapping.  If target returns null, values are
+     * mapped to values of the list itself.
+     */
+    private PredictableShuffle getPredictableShuffle(
+        final Map<String, PredictableShuffle> shuffles,
+        final String name,
+        final Function<RandomSource, PredictableShuffle.Target> target
+    ) throws IOException {
+        PredictableShuffle shuffle = shuffles.get(name);
+        if (shuffle == null) {
+            synchronized (shuffles) {
+                shuffle = shuffles.get(name);
+                if (shuffle == null) {
+                    final Random named = getRandom().forName(name);
+                    final long key = named.nextLong();
+                    shuffle = new PredictableShuffle(
+                        stringLists.get(name),
+                        key,
+                        target.apply(new RandomSource(named.nextLong())),
+                        ClassAndFunctionRegistry.singleton().getValueListBudget()
+                    );
+                    shuffles.put(name, shuffle);
+                }
+            }
+        }
+        return shuffle;
     }
 
     /**
@@ -83,27 +205,13 @@ public class Table extends DatabaseAwareRequirementFunction {
      * @return
      */
     private String getPredictableShuffledValueFor(final String name, final String value) {
-        if (!predictableShuffle.containsKey(name)) {
-            final List<String> list = stringLists.get(name);
-            final List<String> shuffled = new ArrayList<>(list);
-            Collections.shuffle(shuffled);
-
-            final Map<String, String> smap = new HashMap<>();
-            final Iterator<String> lit = list.iterator();
-            final Iterator<String> sit = shuffled.iterator();
-            while (lit.hasNext()) {
-                smap.put(lit.next(), sit.next());
-            }
-            predictableShuffle.put(name, smap);
-        }
-
-        final Map<String, String> map = predictableShuffle.get(name);
-        if (!map.containsKey(value)) {
-            final Collection<String> vals = map.values();
-            final int index = (int) Math.abs((long) value.hashCode()) % vals.size();
-            return IterableUtils.get(vals, index);
+        try {
+            return getPredictableShuffle(predictableShuffle, name, (r) -> null).get(value);
+        } catch (IOException e) {
+            // values loaded by generateStringListFromDb are already in an
+            // arena, so nothing is written
+            throw new UncheckedIOException(e);
         }
-        return map.get(value);
     }
     
     /**
@@ -118,58 +226,44 @@ public class Table extends DatabaseAwareRequirementFunction {
      * @return
      */
     private String getPredictableShuffledLipsumSimilarValueFor(final String name, final String value) throws IOException {
-        if (!predictableShuffle.containsKey(name)) {
-            final List<String> list = stringLists.get(name);
-            final List<String> shuffled = new ArrayList<>();
-            for (String v: list) {
-                shuffled.add(lipsum.similar(v));
-            }
-            Collections.shuffle(shuffled);
-
-            final Map<String, String> smap = new HashMap<>();
-            final Iterator<String> lit = list.iterator();
-            final Iterator<String> sit = shuffled.iterator();
-            while (lit.hasNext()) {
-                smap.put(lit.next(), sit.next());
-            }
-            predictableShuffle.put(name, smap);
-        }
-
-        final Map<String, String> map = predictableShuffle.get(name);
-        if (!map.containsKey(value)) {
-            final Collection<String> vals = map.values();
-            final int index = (int) Math.abs((long) value.hashCode()) % vals.size();
-            return IterableUtils.get(vals, index);
-        }
-        return map.get(value);
+        return getPredictableShuffle(predictableLipsumShuffle, name, (r) -> lipsumFor(r)::similar).get(value);
     }
 
     /**
      * Creates a string list of values by querying the database.
      *
+     * Values are kept in a StringArena, counted against the registry's value
+     * list budget.
+     *
      * @param keyName
      * @param query
      * @throws java.sql.SQLException
      */
     protected void generateStringListFromDb(final String keyName, final String query) throws SQLException {
-        if (!stringLists.containsKey(keyName + query.hashCode())) {
+        stringLists.load(keyName + query.hashCode(), () -> {
             log.info("*** reading from database column: " + keyName);
-            final List<String> values = new ArrayList<>();
 
             log.debug("Query:" + query);
+            final StringArena.Builder values = new StringArena.Builder(
+                ClassAndFunctionRegistry.singleton().getValueListBudget()
+            );
+            final StringArena arena;
             Connection con = dbFactory.getConnection();
             try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
                 while (rs.next()) {
                     values.add(rs.getString(1));
                 }
+                arena = values.build();
+            } catch (IOException e) {
+                throw new SQLException("Unable to store values of database column " + keyName, e);
             }
 
-            if (values.isEmpty()) {
+            if (arena.isEmpty()) {
                 // TODO: throw a meaningful exception here
                 log.error("!!! Database column " + keyName + " did not return any values");
             }
-            stringLists.put(keyName + query.hashCode(), values);
-        }
+            return arena;
+        });
     }
 
     /**
@@ -204,7 +298,7 @@ public class Table extends DatabaseAwareRequirementFunction {
             }
         }
         generateStringListFromDb(keyName, sb.toString());
-        return getNextShuffledItemFor(keyName + sb.toString().hashCode());
+        return stringLists.next(keyName + sb.toString().hashCode());
     }
 
     /**
@@ -221,6 +315,7 @@ public class Table extends DatabaseAwareRequirementFunction {
      * @return
      * @throws SQLException
      */
+    @Deterministic
     public String mappedColumnShuffle(
         @NamedParameter("table") String table,
         @NamedParameter("column") String column,
@@ -257,6 +352,7 @@ public class Table extends DatabaseAwareRequirementFunction {
      * @return
      * @throws SQLException, IOException
      */
+    @Deterministic
     public String mappedLipsumSimilarColumnShuffle(
         @NamedParameter("table") String table,
         @NamedParameter("column") String column,
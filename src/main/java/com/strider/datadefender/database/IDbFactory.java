@@ -23,8 +23,10 @@ import com.strider.datadefender.DataDefenderException;
 import com.strider.datadefender.DbConfig;
 import com.strider.datadefender.DbConfig.Vendor;
 import com.strider.datadefender.database.metadata.IMetaData;
+import com.strider.datadefender.database.metadata.ITableStatistics;
 import com.strider.datadefender.database.metadata.MetaData;
 import com.strider.datadefender.database.metadata.MySqlMetaData;
+import com.strider.datadefender.database.metadata.TableStatistics;
 import com.strider.datadefender.database.sqlbuilder.ISqlBuilder;
 import com.strider.datadefender.database.sqlbuilder.SqlBuilder;
 import com.strider.datadefender.database.sqlbuilder.MsSqlBuilder;
@@ -47,6 +49,7 @@ public interface IDbFactory extends ICloseableNoException {
 
     ISqlBuilder createSQLBuilder() throws DataDefenderException;
     IMetaData fetchMetaData() throws DataDefenderException;
+    ITableStatistics createTableStatistics() throws DataDefenderException;
     Connection getConnection();
     Connection getUpdateConnection();
     String getVendorName();
@@ -136,12 +139,18 @@ public interface IDbFactory extends ICloseableNoException {
             @Override
             public IMetaData fetchMetaData() throws DataDefenderException {
                 try {
-                    return metaData.getConstructor(DbConfig.class, Connection.class).newInstance(config, getConnection());
+                    final M md = metaData.getConstructor(DbConfig.class, Connection.class).newInstance(config, getConnection());
+                    md.setTableStatistics(createTableStatistics());
+                    return md;
                 } catch (NoSuchMethodException|InstantiationException|IllegalAccessException|InvocationTargetException e) {
                     throw new DataDefenderException("", e);
                 }
             }
             @Override
+            public ITableStatistics createTableStatistics() throws DataDefenderException {
+                return new TableStatistics(config, getConnection(), createSQLBuilder());
+            }
+            @Override
             public ISqlBuilder createSQLBuilder() throws DataDefenderException {
                 try {
                     return builder.getConstructor(DbConfig.class).newInstance(config);
@@ -28,4 +28,5 @@ import java.util.List;
 public interface IMetaData {
     List<TableMetaData> getMetaData() throws SQLException;
     TableMetaData getMetaDataFor(final ResultSet rs) throws SQLException;
+    void setTableStatistics(ITableStatistics tableStatistics);
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.database.metadata;
+
+import java.sql.SQLException;
+
+/**
+ * Row counts for tables, estimated from database statistics where possible.
+ */
+public interface ITableStatistics {
+
+    /**
+     * Returns the number of rows in the table.
+     *
+     * Unless exact row counts are configured, this is an estimate read from
+     * the database's catalog, which may be out of date.  If no estimate is
+     * available the rows are counted.
+     *
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    long getRowCount(String tableName) throws SQLException;
+
+    /**
+     * Returns true if the table has no rows, reading at most one row to find
+     * out.
+     *
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    boolean isEmpty(String tableName) throws SQLException;
+}
@@ -17,13 +17,13 @@ package com.strider.datadefender.database.metadata;
 
 import com.strider.datadefender.DbConfig;
 import com.strider.datadefender.DbConfig.Vendor;
+import com.strider.datadefender.database.sqlbuilder.SqlBuilder;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -31,9 +31,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.collections4.CollectionUtils;
 
+import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -48,6 +48,9 @@ public class MetaData implements IMetaData {
     protected final DbConfig config;
     protected final SqlTypeToClass sqlTypeMap;
 
+    @Setter
+    private ITableStatistics tableStatistics;
+
     public MetaData(DbConfig config, Connection connection) {
         this(config, connection, new SqlTypeToClass());
     }
@@ -177,11 +180,7 @@ public class MetaData implements IMetaData {
             log.info("Excluding table by inclusion/exclusion rules: {}", tableName);
             return true;
         }
-        String schemaTableName = tableName;
-        if (!StringUtils.isBlank(config.getSchema())) {
-            schemaTableName = config.getSchema() + "." + tableName;
-        }
-        if (config.isSkipEmptyTables() && getNumberOfRows(schemaTableName) == 0) {
+        if (config.isSkipEmptyTables() && isEmptyTable(tableName)) {
             log.info("Skipping empty table: {}", tableName);
             return true;
         }
@@ -200,24 +199,25 @@ public class MetaData implements IMetaData {
     }
 
     /**
-     * Performs a COUNT(*) query on the passed table to determine number of rows
-     * in a table.
+     * Returns true if the passed table has no rows.
      *
-     * @param table
+     * Uses the ITableStatistics set on this object, or one using the default
+     * SqlBuilder if none was set.
+     *
+     * @param tableName
      * @return
      */
-    private int getNumberOfRows(final String table) {
-        int rowNum = 0;
-        try (
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + table)
-        ) {
-            rs.next();
-            rowNum = rs.getInt(1);
+    private boolean isEmptyTable(final String tableName) {
+        if (tableStatistics == null) {
+            tableStatistics = new TableStatistics(config, connection, new SqlBuilder(config));
+        }
+        try {
+            return tableStatistics.isEmpty(tableName);
         } catch (SQLException sqle) {
+            // a table that can't be read is skipped as well
             log.error(sqle.toString());
         }
-        return rowNum;
+        return true;
     }
 
     /**
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.database.metadata;
+
+import com.strider.datadefender.DbConfig;
+import com.strider.datadefender.database.sqlbuilder.ISqlBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.extern.log4j.Log4j2;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reads estimated row counts from the vendor's catalog:
+ *
+ * <ul>
+ *   <li>PostgreSQL: pg_class.reltuples</li>
+ *   <li>MySQL/MariaDB: information_schema.TABLES.TABLE_ROWS</li>
+ *   <li>SQL Server: sys.partitions.rows of the heap or clustered index</li>
+ *   <li>Oracle: ALL_TABLES.NUM_ROWS</li>
+ *   <li>H2: INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE</li>
+ * </ul>
+ *
+ * Falls back to COUNT(*) when exact row counts are configured, or for tables
+ * the catalog has no statistics for.
+ *
+ * Table names containing a "." are taken to be prefixed with their schema,
+ * otherwise the configured schema is used, or the connection's current
+ * schema if none is configured.
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class TableStatistics implements ITableStatistics {
+
+    protected final DbConfig config;
+    protected final Connection connection;
+    protected final ISqlBuilder sqlBuilder;
+
+    /**
+     * Returns the catalog query for the estimated row count of the table
+     * passed as the first parameter, in the schema passed as the second
+     * parameter if withSchema is true, or the current schema otherwise.
+     *
+     * @param withSchema
+     * @return
+     */
+    protected String getEstimateQuery(final boolean withSchema) {
+        switch (config.getVendor()) {
+            case POSTGRESQL:
+                // reltuples is -1 for tables that were never analyzed
+                return "SELECT CASE WHEN c.reltuples < 0 THEN NULL ELSE CAST(c.reltuples AS BIGINT) END"
+                    + " FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+                    + " WHERE c.relname = ? AND n.nspname = " + (withSchema ? "?" : "current_schema()");
+            case MYSQL:
+            case MARIADB:
+                return "SELECT TABLE_ROWS FROM information_schema.TABLES"
+                    + " WHERE TABLE_NAME = ? AND TABLE_SCHEMA = " + (withSchema ? "?" : "DATABASE()");
+            case SQLSERVER:
+                return "SELECT SUM(p.rows) FROM sys.partitions p"
+                    + " JOIN sys.tables t ON t.object_id = p.object_id"
+                    + " JOIN sys.schemas s ON s.schema_id = t.schema_id"
+                    + " WHERE t.name = ? AND s.name = " + (withSchema ? "?" : "SCHEMA_NAME()")
+                    + " AND p.index_id IN (0, 1)";
+            case ORACLE:
+                return "SELECT NUM_ROWS FROM ALL_TABLES"
+                    + " WHERE TABLE_NAME = ? AND OWNER = " + (withSchema ? "?" : "SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA')");
+            case H2:
+                return "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES"
+                    + " WHERE UPPER(TABLE_NAME) = UPPER(?) AND UPPER(TABLE_SCHEMA) = "
+                    + (withSchema ? "UPPER(?)" : "CURRENT_SCHEMA");
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the estimated number of rows in the table, or null if the
+     * catalog doesn't have one.
+     *
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    public Long getEstimatedRowCount(final String tableName) throws SQLException {
+        String schema = config.getSchema();
+        String table = tableName;
+        final int dot = tableName.lastIndexOf('.');
+        if (dot != -1) {
+            schema = tableName.substring(0, dot);
+            table = tableName.substring(dot + 1);
+        }
+        final boolean withSchema = StringUtils.isNotBlank(schema);
+        final String sql = getEstimateQuery(withSchema);
+        if (sql == null) {
+            return null;
+        }
+
+        log.debug("Querying for estimated row count: {}", sql);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            if (withSchema) {
+                stmt.setString(2, schema);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    final long estimate = rs.getLong(1);
+                    return rs.wasNull() ? null : estimate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of rows in the table with a COUNT(*) query.
+     *
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    public long getExactRowCount(final String tableName) throws SQLException {
+        final String sql = "SELECT COUNT(*) FROM " + qualify(tableName);
+        log.debug("Counting rows: {}", sql);
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Override
+    public long getRowCount(final String tableName) throws SQLException {
+        if (!config.isExactRowCounts()) {
+            final Long estimate = getEstimatedRowCount(tableName);
+            if (estimate != null) {
+                return estimate;
+            }
+            log.debug("No estimated row count for {}, counting rows", tableName);
+        }
+        return getExactRowCount(tableName);
+    }
+
+    /**
+     * Selects at most a single row from the table.
+     *
+     * Statement.setMaxRows is used rather than a vendor specific limit clause,
+     * and is passed on to the database by drivers that support it.
+     *
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    @Override
+    public boolean isEmpty(final String tableName) throws SQLException {
+        final String sql = "SELECT 1 FROM " + qualify(tableName);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.setMaxRows(1);
+            stmt.setFetchSize(1);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                return !rs.next();
+            }
+        }
+    }
+
+    /**
+     * Returns the table name prefixed with the configured schema, unless it
+     * already has a schema.
+     *
+     * @param tableName
+     * @return
+     */
+    private String qualify(final String tableName) {
+        if (tableName.indexOf('.') != -1) {
+            return tableName;
+        }
+        return sqlBuilder.prefixSchema(tableName);
+    }
+}
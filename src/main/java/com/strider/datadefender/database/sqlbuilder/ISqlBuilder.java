@@ -17,6 +17,8 @@ package com.strider.datadefender.database.sqlbuilder;
 
 import com.strider.datadefender.DbConfig.Vendor;
 
+import java.util.Collection;
+
 /**
  * Interface for all classes implementing SQL builder.
  *
@@ -41,6 +43,51 @@ public interface ISqlBuilder {
      */
     String prefixSchema(String tableName);
 
+    /**
+     * Returns the name to use for a temporary staging table with the passed
+     * base name.
+     *
+     * @param name
+     * @return
+     */
+    String getStagingTableName(String name);
+
+    /**
+     * Creates an empty temporary staging table with the passed columns of
+     * tableName, whose rows are visible only to the current session.
+     *
+     * If the vendor's temporary tables outlive the session, the statement
+     * succeeds without changes if the table already exists, so it's re-used.
+     *
+     * @param stagingTable the name returned by getStagingTableName
+     * @param tableName
+     * @param columns
+     * @return
+     */
+    String buildCreateStagingTable(String stagingTable, String tableName, Collection<String> columns);
+
+    /**
+     * Creates a single statement updating columns in tableName to the values
+     * in matching rows of stagingTable, joining on the passed keys.
+     *
+     * @param tableName
+     * @param stagingTable
+     * @param keys
+     * @param columns
+     * @return
+     */
+    String buildStagedUpdate(String tableName, String stagingTable, Collection<String> keys, Collection<String> columns);
+
+    /**
+     * Releases the staging table created with buildCreateStagingTable once
+     * it's no longer needed, by dropping it or, if it's kept for re-use, by
+     * emptying it.
+     *
+     * @param stagingTable
+     * @return
+     */
+    String buildReleaseStagingTable(String stagingTable);
+
     /**
      * Method to get DB Vendor
      * @return
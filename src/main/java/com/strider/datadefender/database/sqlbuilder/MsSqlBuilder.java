@@ -16,6 +16,10 @@
 package com.strider.datadefender.database.sqlbuilder;
 
 import com.strider.datadefender.DbConfig;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
 import org.apache.commons.lang3.StringUtils;
 
 import lombok.extern.log4j.Log4j2;
@@ -64,4 +68,56 @@ public class MsSqlBuilder extends SqlBuilder {
         }
         return "[" + tableName + "]";
     }
+
+    /**
+     * Prefixes the name with "#" to make it a local temporary table.
+     *
+     * @param name
+     * @return
+     */
+    @Override
+    public String getStagingTableName(final String name) {
+        return "#" + name;
+    }
+
+    /**
+     * Creates the staging table with "SELECT ... INTO".
+     *
+     * SELECT INTO copies a column's IDENTITY property, which would prevent
+     * inserting key values into the staging table, unless the query is a
+     * UNION.
+     *
+     * @param stagingTable
+     * @param tableName
+     * @param columns
+     * @return
+     */
+    @Override
+    public String buildCreateStagingTable(final String stagingTable, final String tableName, final Collection<String> columns) {
+        final String cols = StringUtils.join(columns, ", ");
+        return "SELECT " + cols + " INTO " + stagingTable + " FROM " + tableName + " WHERE 1 = 0"
+            + " UNION ALL SELECT " + cols + " FROM " + tableName + " WHERE 1 = 0";
+    }
+
+    /**
+     * Uses "UPDATE ... FROM ... JOIN".
+     *
+     * @param tableName
+     * @param stagingTable
+     * @param keys
+     * @param columns
+     * @return
+     */
+    @Override
+    public String buildStagedUpdate(
+        final String tableName,
+        final String stagingTable,
+        final Collection<String> keys,
+        final Collection<String> columns
+    ) {
+        final String sql = "UPDATE d SET " + getAssignments(columns) + " FROM " + tableName + " d JOIN "
+            + stagingTable + " s ON " + keys.stream().map((k) -> "d." + k + " = s." + k).collect(Collectors.joining(" AND "));
+        log.debug("Staged update: [{}]", sql);
+        return sql;
+    }
 }
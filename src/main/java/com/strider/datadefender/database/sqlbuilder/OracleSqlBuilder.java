@@ -17,6 +17,9 @@
 package com.strider.datadefender.database.sqlbuilder;
 
 import com.strider.datadefender.DbConfig;
+
+import java.util.Collection;
+
 import org.apache.commons.lang3.StringUtils;
 
 import lombok.extern.log4j.Log4j2;
@@ -46,4 +49,41 @@ public class OracleSqlBuilder extends SqlBuilder {
         log.debug("Query after adding limit: [{}]", sql);
         return sql;
     }
+
+    /**
+     * Creates a global temporary table, with rows kept until the end of the
+     * session rather than the transaction, so they survive commits made
+     * while staging.
+     *
+     * A global temporary table's definition is a permanent schema object, so
+     * it's only created if it doesn't exist yet (ORA-00955 is ignored), and
+     * is then kept for re-use - see buildReleaseStagingTable.
+     *
+     * @param stagingTable
+     * @param tableName
+     * @param columns
+     * @return
+     */
+    @Override
+    public String buildCreateStagingTable(final String stagingTable, final String tableName, final Collection<String> columns) {
+        final String create = "CREATE GLOBAL TEMPORARY TABLE " + stagingTable + " ON COMMIT PRESERVE ROWS AS SELECT "
+            + StringUtils.join(columns, ", ") + " FROM " + tableName + " WHERE 1 = 0";
+        return "BEGIN EXECUTE IMMEDIATE '" + StringUtils.replace(create, "'", "''") + "'; "
+            + "EXCEPTION WHEN OTHERS THEN IF SQLCODE != -955 THEN RAISE; END IF; END;";
+    }
+
+    /**
+     * Empties the session's rows of the global temporary table, keeping its
+     * definition for the next run staging the same columns of the table.
+     *
+     * Dropping it instead would fail while another session is staging rows
+     * in it, and leave it behind anyway if a run stopped before releasing it.
+     *
+     * @param stagingTable
+     * @return
+     */
+    @Override
+    public String buildReleaseStagingTable(final String stagingTable) {
+        return "TRUNCATE TABLE " + stagingTable;
+    }
 }
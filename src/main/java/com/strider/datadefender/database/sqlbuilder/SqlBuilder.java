@@ -18,6 +18,9 @@ package com.strider.datadefender.database.sqlbuilder;
 import com.strider.datadefender.DbConfig;
 import com.strider.datadefender.DbConfig.Vendor;
 
+import java.util.Collection;
+import java.util.stream.Collectors;
+
 import org.apache.commons.lang3.StringUtils;
 
 import lombok.extern.log4j.Log4j2;
@@ -70,6 +73,93 @@ public class SqlBuilder implements ISqlBuilder {
         return tableName;
     }
     
+    /**
+     * Returns the passed name unchanged.
+     *
+     * @param name
+     * @return
+     */
+    @Override
+    public String getStagingTableName(final String name) {
+        return name;
+    }
+
+    /**
+     * Creates the staging table with "CREATE TEMPORARY TABLE ... AS SELECT",
+     * selecting no rows so only column definitions are copied.
+     *
+     * @param stagingTable
+     * @param tableName
+     * @param columns
+     * @return
+     */
+    @Override
+    public String buildCreateStagingTable(final String stagingTable, final String tableName, final Collection<String> columns) {
+        final String create = (config.getVendor() == Vendor.H2) ? "CREATE LOCAL TEMPORARY TABLE " : "CREATE TEMPORARY TABLE ";
+        return create + stagingTable + " AS SELECT " + StringUtils.join(columns, ", ")
+            + " FROM " + tableName + " WHERE 1 = 0";
+    }
+
+    /**
+     * Uses "UPDATE ... FROM" for PostgreSQL, "UPDATE ... JOIN" for MySQL and
+     * MariaDB, and "MERGE INTO ... USING" otherwise.
+     *
+     * @param tableName
+     * @param stagingTable
+     * @param keys
+     * @param columns
+     * @return
+     */
+    @Override
+    public String buildStagedUpdate(
+        final String tableName,
+        final String stagingTable,
+        final Collection<String> keys,
+        final Collection<String> columns
+    ) {
+        final String join = keys.stream().map((k) -> "d." + k + " = s." + k).collect(Collectors.joining(" AND "));
+        String sql;
+        if (config.getVendor() == Vendor.POSTGRESQL) {
+            sql = "UPDATE " + tableName + " AS d SET "
+                + columns.stream().map((c) -> c + " = s." + c).collect(Collectors.joining(", "))
+                + " FROM " + stagingTable + " s WHERE " + join;
+        } else if (config.getVendor() == Vendor.MYSQL || config.getVendor() == Vendor.MARIADB) {
+            sql = "UPDATE " + tableName + " d JOIN " + stagingTable + " s ON " + join + " SET "
+                + getAssignments(columns);
+        } else {
+            sql = "MERGE INTO " + tableName + " d USING " + stagingTable + " s ON (" + join + ")"
+                + " WHEN MATCHED THEN UPDATE SET " + getAssignments(columns);
+        }
+        log.debug("Staged update: [{}]", sql);
+        return sql;
+    }
+
+    /**
+     * Returns "d.col = s.col" assignments for the passed columns, separated by
+     * commas.
+     *
+     * @param columns
+     * @return
+     */
+    protected String getAssignments(final Collection<String> columns) {
+        return columns.stream().map((c) -> "d." + c + " = s." + c).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Uses "DROP TEMPORARY TABLE" for MySQL and MariaDB so a regular table
+     * can't be dropped by mistake, and "DROP TABLE" otherwise.
+     *
+     * @param stagingTable
+     * @return
+     */
+    @Override
+    public String buildReleaseStagingTable(final String stagingTable) {
+        if (config.getVendor() == Vendor.MYSQL || config.getVendor() == Vendor.MARIADB) {
+            return "DROP TEMPORARY TABLE " + stagingTable;
+        }
+        return "DROP TABLE " + stagingTable;
+    }
+
     /**
      * Method to get DB Vendor
      * @return
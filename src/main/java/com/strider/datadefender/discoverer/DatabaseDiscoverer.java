@@ -22,6 +22,7 @@ import com.strider.datadefender.DbConfig.Vendor;
 import com.strider.datadefender.ModelDiscoveryConfig;
 import com.strider.datadefender.database.IDbFactory;
 import com.strider.datadefender.database.metadata.IMetaData;
+import com.strider.datadefender.database.metadata.ITableStatistics;
 import com.strider.datadefender.database.metadata.TableMetaData;
 import com.strider.datadefender.database.metadata.TableMetaData.ColumnMetaData;
 import com.strider.datadefender.database.sqlbuilder.ISqlBuilder;
@@ -266,21 +267,17 @@ public class DatabaseDiscoverer extends Discoverer {
         log.info("Extension list: {}", specialCaseFunctions);
 
         final ISqlBuilder sqlBuilder = factory.createSQLBuilder();
+        final ITableStatistics statistics = factory.createTableStatistics();
         List<Probability> probabilityList;
 
         for (final TableMetaData table : map) {
 
             final String tableName  = table.getTableName();
             final String prefixed = sqlBuilder.prefixSchema(tableName);
-            final String cntQuery = "SELECT COUNT(*) FROM " + prefixed;
 
             int numRows = config.getLimit();
-            try (
-                Statement stmt = factory.getConnection().createStatement();
-                ResultSet rs = stmt.executeQuery(cntQuery)
-            ) {
-                rs.next();
-                numRows = Math.min(numRows, rs.getInt(1));
+            try {
+                numRows = (int) Math.min(numRows, statistics.getRowCount(tableName));
             } catch (SQLException e) {
                 log.error(e.toString());
             }
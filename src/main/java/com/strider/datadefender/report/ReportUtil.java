@@ -46,24 +46,22 @@ import org.apache.commons.lang3.StringUtils;
 @Log4j2
 public class ReportUtil {
     
+    /**
+     * Returns the number of rows in the table, which is an estimate from the
+     * database's statistics unless exact row counts are configured.
+     *
+     * @param factory
+     * @param tableName
+     * @return
+     * @throws DataDefenderException
+     */
     public static int rowCount(final IDbFactory factory, final String tableName) throws DataDefenderException {
-        final ISqlBuilder sqlBuilder = factory.createSQLBuilder();
-        final String      table      = sqlBuilder.prefixSchema(tableName);
-        
-        // Getting number of records in the table
-        final String queryCount = "SELECT count(*) FROM " + table;
-        log.debug("Executing query against database: " + queryCount);
-
         int rowCount = 0;
-
-        try (Statement stmt = factory.getConnection().createStatement();
-            ResultSet resultSet = stmt.executeQuery(queryCount);) {
-            resultSet.next();
-            rowCount = resultSet.getInt(1);
+        try {
+            rowCount = (int) Math.min(Integer.MAX_VALUE, factory.createTableStatistics().getRowCount(tableName));
         } catch (SQLException sqle) {
             log.error(sqle.toString());
         }
-
         return rowCount;
     }
 
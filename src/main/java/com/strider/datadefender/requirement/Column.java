@@ -15,6 +15,7 @@
  */
 package com.strider.datadefender.requirement;
 
+import com.strider.datadefender.requirement.plan.MemoCache;
 import com.strider.datadefender.requirement.plan.Plan;
 import com.strider.datadefender.requirement.plan.PlanRef;
 import java.lang.reflect.InvocationTargetException;
@@ -34,6 +35,8 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.ClassUtils;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.extern.log4j.Log4j2;
 
 import static java.util.Collections.unmodifiableList;
@@ -69,6 +72,13 @@ public class Column {
     @XmlElement(name = "exclude")
     private List<Exclude> exclusions;
 
+    /**
+     * Lookups made by this column in the cache of a deterministic plan.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final MemoCache.Stats cacheStats = new MemoCache.Stats();
+
     public Column() {
     }
 
@@ -105,6 +115,17 @@ public class Column {
         return plan;
     }
 
+    /**
+     * Returns true if the column's plan is passed the ResultSet at the current
+     * row rather than the column's value.
+     *
+     * @return
+     */
+    public boolean isResultSetPlan() {
+        final Class<?> argType = getResolvedPlan().getDynamicArgumentType();
+        return argType != null && ClassUtils.isAssignable(ResultSet.class, argType);
+    }
+
     /**
      * Calls all functions defined under Functions in order.
      *
@@ -121,13 +142,75 @@ public class Column {
         InvocationTargetException,
         InstantiationException {
 
-        Object startingValue = null;
-        Class<?> argType = getResolvedPlan().getDynamicArgumentType();
-        if (argType != null && ClassUtils.isAssignable(ResultSet.class, argType)) {
-            startingValue = rs;
-        } else {
-            startingValue = rs.getObject(name, type);
+        if (isResultSetPlan()) {
+            return invokeFunctionChainWithValue(rs);
+        }
+        return invokeFunctionChainWithValue(rs.getObject(name, type));
+    }
+
+    /**
+     * Calls all functions defined under Functions in order, starting with the
+     * passed value, which should be the column's value read as the column's
+     * type.
+     *
+     * Allows the chain to be invoked after the value has been read, without
+     * access to the ResultSet.  Shouldn't be called if isResultSetPlan returns
+     * true.
+     *
+     * @param startingValue
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws java.lang.InstantiationException
+     */
+    public Object invokeFunctionChainWithValue(Object startingValue)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        final Object result = getResolvedPlan().invoke(startingValue, cacheStats);
+        return type.isInstance(result) ? result : ConvertUtils.convert(result, type);
+    }
+
+    /**
+     * Returns true if the column's plan can be invoked for several values in a
+     * single call to invokeFunctionChainWithValues.
+     *
+     * @return
+     */
+    public boolean isBatchable() {
+        return !isResultSetPlan() && getResolvedPlan().isBatchable();
+    }
+
+    /**
+     * Calls all functions defined under Functions in order for each of the
+     * passed values, returning the results in the same order.
+     *
+     * Each function is called once for all values when isBatchable returns
+     * true, and once for each value otherwise.  Shouldn't be called if
+     * isResultSetPlan returns true.
+     *
+     * @param startingValues
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws java.lang.InstantiationException
+     */
+    public Object[] invokeFunctionChainWithValues(Object[] startingValues)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        final Object[] results = getResolvedPlan().invokeBatch(startingValues, cacheStats);
+        for (int i = 0; i < results.length; ++i) {
+            if (!type.isInstance(results[i])) {
+                results[i] = ConvertUtils.convert(results[i], type);
+            }
         }
-        return ConvertUtils.convert(getResolvedPlan().invoke(startingValue), type);
+        return results;
     }
 }
@@ -19,9 +19,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.lang3.ClassUtils;
@@ -37,7 +37,35 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class TypeConverter {
 
-    private static Map<Integer, Integer> cachedConversionWeight = new HashMap<>();
+    /**
+     * A conversion using a constructor of the target type, resolved once for
+     * the pair of types.
+     */
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(Object value)
+            throws InstantiationException,
+            IllegalAccessException,
+            IllegalArgumentException,
+            InvocationTargetException;
+    }
+
+    /**
+     * Constructor converters and isConvertible results for types that need
+     * one, keyed by the "from" class and then the "to" class.
+     */
+    private static final ClassValue<Map<Class<?>, Converter>> converters = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, Converter> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final ClassValue<Map<Class<?>, Boolean>> convertible = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, Boolean> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
     private static final List<Class<?>> primitiveOrder = List.of(
         double.class, Double.class, float.class, Float.class, long.class, Long.class,
         int.class, Integer.class, short.class, Short.class, byte.class, Byte.class,
@@ -60,8 +88,15 @@ public class TypeConverter {
             return true;
         } else if (ClassUtils.isPrimitiveOrWrapper(from) && String.class.isAssignableFrom(from)) {
             return true;
+        } else if (from == null || to == null) {
+            return false;
         }
-        return (getConvertibleConstructor(from, to) != null);
+        final Map<Class<?>, Boolean> cached = convertible.get(from);
+        final Boolean result = cached.get(to);
+        if (result != null) {
+            return result;
+        }
+        return cached.computeIfAbsent(to, (t) -> getConvertibleConstructor(from, t) != null);
     }
 
     private static int getConversionScore(Class<?> from, Class<?> to) {
@@ -112,6 +147,9 @@ public class TypeConverter {
      *    o If value is primitive, the primitive type or it's wrapper
      *    o If value is a String, a primitive or wrapper argument
      *
+     * Which constructor to use is only looked up the first time a value of a
+     * given class is converted to a given type, and cached for later calls.
+     *
      * @param value
      * @param type
      * @return
@@ -121,25 +159,39 @@ public class TypeConverter {
         IllegalAccessException,
         IllegalArgumentException,
         InvocationTargetException {
-        if (ClassUtils.isAssignable(value.getClass(), type)) {
+        final Class<?> from = value.getClass();
+        if (ClassUtils.isAssignable(from, type)) {
             return value;
         } else if (String.class.equals(type)) {
             return value.toString();
         } else if (ClassUtils.isPrimitiveOrWrapper(type) && value instanceof String) {
             return ConvertUtils.convert(value, type);
         }
-        Constructor<?> constr = getConvertibleConstructor(value.getClass(), type);
-        Class<?> pt = (constr != null && constr.getParameterCount() > 0) ? constr.getParameterTypes()[0] : null;
-        if (!ClassUtils.isAssignable(value.getClass(), pt)) {
+        final Map<Class<?>, Converter> cached = converters.get(from);
+        Converter converter = cached.get(type);
+        if (converter == null) {
+            converter = cached.computeIfAbsent(type, (t) -> findConstructorConverter(from, t));
+        }
+        return converter.convert(value);
+    }
+
+    private static Converter findConstructorConverter(Class<?> from, Class<?> type) {
+        Constructor<?> constr = getConvertibleConstructor(from, type);
+        if (constr == null) {
+            return (v) -> {
+                throw new IllegalArgumentException("Unable to convert " + from.getName() + " to " + type.getName());
+            };
+        }
+        Class<?> pt = (constr.getParameterCount() > 0) ? constr.getParameterTypes()[0] : null;
+        if (!ClassUtils.isAssignable(from, pt)) {
             if (pt != null && ClassUtils.isAssignable(String.class, pt)) {
-                return constr.newInstance(value.toString());
-            } else if (pt != null && ClassUtils.isPrimitiveOrWrapper(pt) && value instanceof String) {
-                return constr.newInstance(ConvertUtils.convert(value, pt));
+                return (v) -> constr.newInstance(v.toString());
+            } else if (pt != null && ClassUtils.isPrimitiveOrWrapper(pt) && String.class.equals(from)) {
+                return (v) -> constr.newInstance(ConvertUtils.convert(v, pt));
             }
             // try anyway...
         }
-
-        return constr.newInstance(value);
+        return (v) -> constr.newInstance(v);
     }
 
     private static Constructor<?> getConstructorInOrder(Class<?> in, List<Class<?>> cls) {
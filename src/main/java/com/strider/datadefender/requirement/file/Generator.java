@@ -65,7 +65,7 @@ public class Generator {
         ),
         "core-date", createGlobalPlan(
             "core-date",
-            new Function("Core#randomDate", false),
+            new Function("Core#randomSqlDate", false),
             List.of(
                 new Argument("start", String.class, "1970-01-01"),
                 new Argument("end", String.class, "2005-01-01"),
@@ -74,7 +74,7 @@ public class Generator {
         ),
         "core-date-time", createGlobalPlan(
             "core-date-time",
-            new Function("Core#randomDateTime", false),
+            new Function("Core#randomTimestamp", false),
             List.of(
                 new Argument("start", String.class, "2010-01-01 00:00:00"),
                 new Argument("end", String.class, "2020-04-01 00:00:00"),
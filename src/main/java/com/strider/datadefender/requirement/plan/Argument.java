@@ -118,6 +118,16 @@ public class Argument {
         }
     }
 
+    /**
+     * Returns true if the argument is passed the running value, rather than a
+     * value of its own.
+     *
+     * @return
+     */
+    public boolean isDynamic() {
+        return Objects.equals(Boolean.TRUE, isDynamicValue) && value == null && elements == null;
+    }
+
     /**
      * Returns the value of the argument.
      *
@@ -135,7 +145,7 @@ public class Argument {
         IllegalArgumentException,
         InvocationTargetException {
         
-        if (Objects.equals(Boolean.TRUE, isDynamicValue) && value == null && elements == null) {
+        if (isDynamic()) {
             log.debug("Using dynamic value for attribute");
             if (!type.isInstance(lastValue)) {
                 log.debug("Converting dynamic attribute value: {} to type: {}", lastValue, type);
@@ -15,16 +15,20 @@
  */
 package com.strider.datadefender.requirement.plan;
 
+import com.strider.datadefender.functions.Deterministic;
 import com.strider.datadefender.functions.NamedParameter;
 import com.strider.datadefender.requirement.TypeConverter;
 import com.strider.datadefender.requirement.registry.ClassAndFunctionRegistry;
 import com.strider.datadefender.requirement.registry.RequirementFunction;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -55,6 +59,21 @@ import lombok.extern.log4j.Log4j2;
 @XmlAccessorType(XmlAccessType.NONE)
 public class Function implements Invokable {
 
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+    static {
+        try {
+            WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(
+                Function.class,
+                "wrapTargetException",
+                MethodType.methodType(Object.class, Throwable.class)
+            );
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     @Setter(AccessLevel.NONE)
     @XmlAttribute(name = "name")
     private String functionName;
@@ -75,6 +94,45 @@ public class Function implements Invokable {
     @Setter(AccessLevel.NONE)
     private ClassAndFunctionRegistry registry;
 
+    /**
+     * The Argument passed as each of the method's parameters, and the
+     * parameter types they're converted to, resolved once by bind.  Written
+     * last, so the other fields set by bind are visible once it's set.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile Argument[] boundArguments;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Class<?>[] parameterTypes;
+
+    /**
+     * Calls the method with a receiver (ignored for static methods) and an
+     * array of arguments, or null if a handle couldn't be created for it, in
+     * which case it's called reflectively.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private MethodHandle invoker;
+
+    /**
+     * Calls the method's batch counterpart, or null if it doesn't have one.
+     * See {@link #findBatchFunction()}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private MethodHandle batchInvoker;
+
+    /**
+     * Index of the parameter passed the running value, which is passed as an
+     * array to the batch counterpart, or -1 if the counterpart is instead
+     * passed the number of values to return.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int batchIndex = -1;
+
     public Function() {
         this(ClassAndFunctionRegistry.singleton());
     }
@@ -97,6 +155,17 @@ public class Function implements Invokable {
     public void setFunction(Method fn) {
         function = fn;
         functionName = fn.getName();
+        boundArguments = null;
+    }
+
+    /**
+     * Setter for 'argument' elements.
+     *
+     * @param arguments
+     */
+    public void setArguments(List<Argument> arguments) {
+        this.arguments = arguments;
+        boundArguments = null;
     }
 
     /**
@@ -106,6 +175,15 @@ public class Function implements Invokable {
         return Modifier.isStatic(function.getModifiers());
     }
 
+    /**
+     * Returns true if the underlying method is annotated as Deterministic.
+     *
+     * @return
+     */
+    public boolean isDeterministic() {
+        return function != null && function.isAnnotationPresent(Deterministic.class);
+    }
+
     /**
      * Looks for a class/method in the passed Function parameter in the form
      * com.package.Class#methodName, com.package.Class.methodName, or
@@ -285,13 +363,238 @@ public class Function implements Invokable {
         if (function == null) {
             throw new IllegalArgumentException("Function maching signature and arguments not found");
         }
+        bind();
         return function;
     }
 
+    /**
+     * Resolves the Argument for each of the method's parameters - by a
+     * parameter's NamedParameter annotation or name if an argument has that
+     * name, or by position otherwise - and creates a MethodHandle calling the
+     * method, so invoking it doesn't need to repeat either.
+     */
+    private void bind() {
+        final java.lang.reflect.Parameter[] parameters = function.getParameters();
+        final Map<String, Argument> mappedArgs = CollectionUtils.emptyIfNull(arguments).stream()
+            .filter((a) -> a.getName() != null)
+            .collect(Collectors.toMap(Argument::getName, (o) -> o, (x, y) -> x));
+        final Argument[] bound = new Argument[parameters.length];
+        for (int index = 0; index < parameters.length; ++index) {
+            final java.lang.reflect.Parameter p = parameters[index];
+            Argument arg = arguments.get(index);
+            NamedParameter named = p.getAnnotation(NamedParameter.class);
+            if (named != null && mappedArgs.containsKey(named.value())) {
+                arg = mappedArgs.get(named.value());
+            } else if (mappedArgs.containsKey(p.getName())) {
+                arg = mappedArgs.get(p.getName());
+            }
+            bound[index] = arg;
+        }
+        parameterTypes = function.getParameterTypes();
+        invoker = createInvoker(function);
+        batchIndex = -1;
+        for (int index = 0; index < bound.length; ++index) {
+            if (bound[index].isDynamic()) {
+                batchIndex = (batchIndex == -1) ? index : -2;
+            }
+        }
+        final Method batch = findBatchFunction();
+        batchInvoker = (batch == null) ? null : createInvoker(batch);
+        boundArguments = bound;
+    }
+
+    /**
+     * Looks for a batch counterpart of the method: a public method in the
+     * same class with the method's name followed by "Batch", returning an
+     * array with one value for each one returned by the method.
+     *
+     * If one of the method's parameters is passed the running value, the
+     * counterpart takes the same parameters with that one replaced by an array
+     * of running values, for example:
+     * <pre>
+     *   public String encrypt(String value, String key)
+     *   public String[] encryptBatch(String[] values, String key)
+     * </pre>
+     * Otherwise, it takes the number of values to return followed by the
+     * method's parameters:
+     * <pre>
+     *   public String randomFirstName()
+     *   public String[] randomFirstNameBatch(int count)
+     * </pre>
+     * Combiners, methods called on the running value, and methods with more
+     * than one parameter passed the running value have no counterpart.
+     *
+     * @return
+     */
+    private Method findBatchFunction() {
+        final Class<?> declaringClass = function.getDeclaringClass();
+        final boolean isStatic = Modifier.isStatic(function.getModifiers());
+        if (
+            isCombinerFunction
+            || batchIndex == -2
+            || (!isStatic && !RequirementFunction.class.isAssignableFrom(declaringClass))
+        ) {
+            return null;
+        }
+        final Class<?>[] types;
+        if (batchIndex == -1) {
+            types = new Class<?>[parameterTypes.length + 1];
+            types[0] = int.class;
+            System.arraycopy(parameterTypes, 0, types, 1, parameterTypes.length);
+        } else {
+            types = parameterTypes.clone();
+            types[batchIndex] = Array.newInstance(parameterTypes[batchIndex], 0).getClass();
+        }
+        try {
+            final Method m = declaringClass.getMethod(function.getName() + "Batch", types);
+            final Class<?> rt = m.getReturnType();
+            if (
+                Modifier.isStatic(m.getModifiers()) != isStatic
+                || !rt.isArray()
+                || rt.getComponentType().isPrimitive()
+            ) {
+                return null;
+            }
+            log.debug("Using batch counterpart {} for {}", m, function);
+            return m;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object wrapTargetException(Throwable e) throws InvocationTargetException {
+        throw new InvocationTargetException(e);
+    }
+
+    /**
+     * Returns a MethodHandle of INVOKER_TYPE calling the passed method, or
+     * null if it isn't accessible.
+     *
+     * Exceptions thrown by the method are wrapped in an
+     * InvocationTargetException by the handle itself, before it's adapted to
+     * INVOKER_TYPE, so exceptions adapting arguments aren't mistaken for the
+     * method's.
+     *
+     * @param m
+     * @return
+     */
+    private static MethodHandle createInvoker(Method m) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(m).asFixedArity();
+            final MethodType type = handle.type();
+            handle = MethodHandles.catchException(
+                handle,
+                Throwable.class,
+                MethodHandles.dropArguments(
+                    WRAP_TARGET_EXCEPTION.asType(MethodType.methodType(type.returnType(), Throwable.class)),
+                    1,
+                    type.parameterList()
+                )
+            );
+            if (Modifier.isStatic(m.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle.asSpreader(Object[].class, m.getParameterCount()).asType(INVOKER_TYPE);
+        } catch (IllegalAccessException e) {
+            log.debug("Calling {} reflectively, a method handle couldn't be created: {}", m, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the function has a batch counterpart, so invokeBatch
+     * makes a single call for all passed values.
+     *
+     * @return
+     */
+    public boolean isBatchable() {
+        if (boundArguments == null) {
+            bind();
+        }
+        return batchInvoker != null;
+    }
+
+    /**
+     * Runs the function for each of the passed running values and returns
+     * their results in the same order, in a single call to the method's
+     * batch counterpart if it has one, or by calling invoke for each value
+     * otherwise.
+     *
+     * @param lastValues
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public Object[] invokeBatch(Object[] lastValues)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        Argument[] bound = boundArguments;
+        if (bound == null) {
+            bind();
+            bound = boundArguments;
+        }
+        Object ob = null;
+        if (batchInvoker != null && !Modifier.isStatic(function.getModifiers())) {
+            ob = ClassAndFunctionRegistry.singleton().getFunctionsSingleton(function.getDeclaringClass());
+        }
+        if (batchInvoker == null || (ob == null && !Modifier.isStatic(function.getModifiers()))) {
+            final Object[] results = new Object[lastValues.length];
+            for (int i = 0; i < lastValues.length; ++i) {
+                results[i] = invoke(lastValues[i]);
+            }
+            return results;
+        }
+
+        final int offset = (batchIndex == -1) ? 1 : 0;
+        final Object[] fnArguments = new Object[bound.length + offset];
+        for (int i = 0; i < bound.length; ++i) {
+            if (i == batchIndex) {
+                final Object values = Array.newInstance(parameterTypes[i], lastValues.length);
+                for (int j = 0; j < lastValues.length; ++j) {
+                    Array.set(values, j, TypeConverter.convert(bound[i].getValue(lastValues[j]), parameterTypes[i]));
+                }
+                fnArguments[i] = values;
+            } else {
+                fnArguments[i + offset] = TypeConverter.convert(bound[i].getValue(null), parameterTypes[i]);
+            }
+        }
+        if (offset == 1) {
+            fnArguments[0] = lastValues.length;
+        }
+        final Object returned;
+        try {
+            returned = batchInvoker.invokeExact(ob, fnArguments);
+        } catch (InvocationTargetException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // exceptions thrown by the method are already wrapped
+            throw new IllegalStateException(e);
+        }
+        final Object[] results = (Object[]) returned;
+        if (results == null || results.length != lastValues.length) {
+            throw new IllegalStateException(
+                "Batch counterpart of " + function + " returned " + ((results == null) ? 0 : results.length)
+                + " values for " + lastValues.length
+            );
+        }
+        return results;
+    }
+
     /**
      * Runs the function referenced by the "Function" element and returns its
      * value.
      *
+     * Arguments and the method handle are resolved when the function is
+     * initialized, so this only converts argument values and calls the
+     * method.  Exceptions thrown by the method are wrapped in an
+     * InvocationTargetException, while those converting or adapting its
+     * arguments are thrown as they are.
+     *
      * @param lastValue
      * @return
      * @throws SQLException
@@ -305,48 +608,90 @@ public class Function implements Invokable {
         InvocationTargetException,
         InstantiationException {
 
-        log.debug("Function declaring class: {}", function.getDeclaringClass());
-        log.debug("Function: {}", function);
-        ClassAndFunctionRegistry registry = ClassAndFunctionRegistry.singleton();
-        Object ob = registry.getFunctionsSingleton(function.getDeclaringClass());
+        Argument[] bound = boundArguments;
+        if (bound == null) {
+            bind();
+            bound = boundArguments;
+        }
+        final Object[] fnArguments = new Object[bound.length];
+        for (int i = 0; i < fnArguments.length; ++i) {
+            fnArguments[i] = TypeConverter.convert(bound[i].getValue(lastValue), parameterTypes[i]);
+        }
+        return call(receiverFor(lastValue), fnArguments);
+    }
+
+    /**
+     * Runs the function as a combiner of the passed values, without modifying
+     * its arguments, so it can be called by several threads at once.
+     *
+     * A static combiner is passed both values, otherwise it's called on
+     * firstArg (or the class's registered singleton) and passed secondArg.
+     *
+     * @param firstArg
+     * @param secondArg
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    Object combine(Object firstArg, Object secondArg)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        if (boundArguments == null) {
+            bind();
+        }
+        final Object[] values = isStatic() ? new Object[] { firstArg, secondArg } : new Object[] { secondArg };
+        final Object[] fnArguments = new Object[parameterTypes.length];
+        for (int i = 0; i < fnArguments.length; ++i) {
+            fnArguments[i] = TypeConverter.convert(values[i], parameterTypes[i]);
+        }
+        return call(receiverFor(firstArg), fnArguments);
+    }
+
+    /**
+     * Returns the object to call a non-static method on: the registered
+     * singleton of a RequirementFunction class, or the passed value converted
+     * to the method's class otherwise.  Returns null for static methods.
+     */
+    private Object receiverFor(Object lastValue)
+        throws InstantiationException,
+        IllegalAccessException,
+        InvocationTargetException {
+
+        if (isStatic()) {
+            return null;
+        }
+        final Class<?> declaringClass = function.getDeclaringClass();
+        Object ob = ClassAndFunctionRegistry.singleton().getFunctionsSingleton(declaringClass);
         if (
             ob == null
             && lastValue != null
-            && !Modifier.isStatic(function.getModifiers())
-            && !RequirementFunction.class.isAssignableFrom(function.getDeclaringClass())
-            && TypeConverter.isConvertible(lastValue.getClass(), function.getDeclaringClass())
+            && !RequirementFunction.class.isAssignableFrom(declaringClass)
+            && TypeConverter.isConvertible(lastValue.getClass(), declaringClass)
         ) {
-            ob = TypeConverter.convert(lastValue, function.getDeclaringClass());
+            ob = TypeConverter.convert(lastValue, declaringClass);
         }
+        return ob;
+    }
 
-        java.lang.reflect.Parameter[] parameters = function.getParameters();
-        List<Object> fnArguments = new ArrayList<>();
-        final Map<String, Argument> mappedArgs = CollectionUtils.emptyIfNull(arguments).stream()
-            .collect(Collectors.toMap(Argument::getName, (o) -> o, (x, y) -> x));
-        // because getValue(rs) throws exceptions, can't use stream map
-        // lambda function
-        int index = -1;
-        for (java.lang.reflect.Parameter p : parameters) {
-            ++index;
-            log.debug("Looking for argument {} in {} or {} in {}", p.getName(), mappedArgs, index, arguments);
-            Argument arg = arguments.get(index);
-            NamedParameter named = p.getAnnotation(NamedParameter.class);
-            if (named != null && mappedArgs.containsKey(named.value())) {
-                arg = mappedArgs.get(named.value());
-            } else if (mappedArgs.containsKey(p.getName())) {
-                arg = mappedArgs.get(p.getName());
-            }
-            fnArguments.add(TypeConverter.convert(
-                arg.getValue(lastValue),
-                p.getType()
-            ));
+    private Object call(Object ob, Object[] fnArguments)
+        throws IllegalAccessException,
+        InvocationTargetException {
+
+        if (invoker == null || (ob == null && !isStatic())) {
+            return function.invoke(ob, fnArguments);
+        }
+        try {
+            return invoker.invokeExact(ob, fnArguments);
+        } catch (InvocationTargetException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // exceptions thrown by the method are already wrapped
+            throw new IllegalStateException(e);
         }
-        final Object fnOb = ob;
-        log.debug("invoking: {} on: {} with: ({})",
-            () -> function.getName(),
-            () -> fnOb,
-            () -> fnArguments.toString()
-        );
-        return function.invoke(fnOb, fnArguments.toArray());
     }
 }
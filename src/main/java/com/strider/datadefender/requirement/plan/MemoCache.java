@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.plan;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache of the results of a deterministic plan, keyed by the
+ * value the plan is invoked with.
+ *
+ * Entries are split between segments by the key's hash, each evicting its
+ * least recently used entry once full, so threads anonymizing different
+ * values rarely wait on each other.  Values are computed outside of the
+ * segment's lock, and may be computed more than once by concurrent misses.
+ */
+public class MemoCache {
+
+    /**
+     * Returned by getIfPresent for values that aren't cached.
+     */
+    public static final Object MISSING = new Object();
+
+    private static final Object NULL = new Object();
+    private static final int SEGMENTS = 16;
+
+    @FunctionalInterface
+    public interface Loader {
+        Object load(Object key)
+            throws SQLException, IllegalAccessException, InvocationTargetException, InstantiationException;
+    }
+
+    /**
+     * Hit and miss counters, kept for the cache as a whole and for each
+     * column using it.
+     */
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        @Override
+        public String toString() {
+            final long h = getHits();
+            final long total = h + getMisses();
+            return String.format("%d hits, %d misses (%.1f%% hit rate)", h, total - h,
+                (total == 0) ? 0.0 : h * 100.0 / total);
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<Object, Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+
+        Segment(final int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Object, Object> eldest) {
+            return size() > maximumSize;
+        }
+    }
+
+    private final Segment[] segments;
+    private final int maximumSize;
+    private final Stats stats = new Stats();
+
+    public MemoCache(final int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        final int count = Math.min(SEGMENTS, maximumSize);
+        segments = new Segment[count];
+        for (int i = 0; i < count; ++i) {
+            segments[i] = new Segment((maximumSize + count - 1) / count);
+        }
+    }
+
+    private Segment segmentFor(final Object key) {
+        final int h = (key == null) ? 0 : key.hashCode();
+        return segments[Math.floorMod(h ^ (h >>> 16), segments.length)];
+    }
+
+    /**
+     * Arrays are compared by identity, so results for them are never found.
+     */
+    private static boolean isCacheable(final Object key) {
+        return key == null || !key.getClass().isArray();
+    }
+
+    /**
+     * Returns the maximum number of values held.
+     *
+     * @return
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of values currently held.
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns counters for all lookups made in the cache.
+     *
+     * @return
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the cached result for key, or MISSING if it isn't cached,
+     * counting the lookup in the cache's stats and the passed column stats if
+     * not null.
+     *
+     * @param key
+     * @param columnStats
+     * @return
+     */
+    public Object getIfPresent(final Object key, final Stats columnStats) {
+        Object value = null;
+        if (isCacheable(key)) {
+            final Segment segment = segmentFor(key);
+            synchronized (segment) {
+                value = segment.get(key);
+            }
+        }
+        final boolean hit = value != null;
+        (hit ? stats.hits : stats.misses).increment();
+        if (columnStats != null) {
+            (hit ? columnStats.hits : columnStats.misses).increment();
+        }
+        if (!hit) {
+            return MISSING;
+        }
+        return (value == NULL) ? null : value;
+    }
+
+    /**
+     * Caches value as the result for key, evicting the least recently used
+     * result of its segment if full.
+     *
+     * @param key
+     * @param value
+     */
+    public void put(final Object key, final Object value) {
+        if (!isCacheable(key)) {
+            return;
+        }
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, (value == null) ? NULL : value);
+        }
+    }
+
+    /**
+     * Returns the cached result for key, loading and caching it if it isn't
+     * cached.
+     *
+     * @param key
+     * @param loader
+     * @param columnStats
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public Object get(final Object key, final Loader loader, final Stats columnStats)
+        throws SQLException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        final Object cached = getIfPresent(key, columnStats);
+        if (cached != MISSING) {
+            return cached;
+        }
+        final Object value = loader.load(key);
+        put(key, value);
+        return value;
+    }
+}
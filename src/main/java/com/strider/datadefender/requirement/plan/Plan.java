@@ -19,7 +19,9 @@ import com.strider.datadefender.requirement.Column;
 import com.strider.datadefender.requirement.TypeConverter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -32,12 +34,15 @@ import jakarta.xml.bind.annotation.XmlIDREF;
 import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 
 import lombok.extern.log4j.Log4j2;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 /**
  *
@@ -48,6 +53,8 @@ import lombok.Data;
 @XmlAccessorType(XmlAccessType.NONE)
 public class Plan implements Invokable {
 
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
     @XmlJavaTypeAdapter(FunctionAttributeAdapter.class)
     @XmlAttribute
     private Function combiner;
@@ -60,6 +67,25 @@ public class Plan implements Invokable {
     @XmlElement(name = "function")
     private List<Function> functions;
 
+    /**
+     * Overrides whether the plan is deterministic, which by default it is if
+     * all of its functions are annotated as Deterministic and it has no
+     * combiner.
+     */
+    @XmlAttribute(name = "deterministic")
+    private Boolean deterministic;
+
+    @XmlAttribute(name = "cache-size")
+    private Integer cacheSize;
+
+    /**
+     * Results of a deterministic plan by the value it was invoked with, or
+     * null if the plan isn't deterministic.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private MemoCache cache;
+
     /**
      * Returns the Class of the first function's dynamic argument if one is set,
      * or null otherwise.
@@ -99,17 +125,36 @@ public class Plan implements Invokable {
         InvocationTargetException,
         InstantiationException {
 
-        List<Argument> args = combiner.getArguments();
-        int index = 0;
-        if (combiner.isStatic()) {
-            args.get(index++).setObjectValue(firstArg);
+        return combiner.combine(firstArg, secondArg);
+    }
+
+    /**
+     * Returns true if the plan returns the same value whenever it's invoked
+     * with the same value.
+     *
+     * @return
+     */
+    public boolean isDeterministic() {
+        if (deterministic != null) {
+            return deterministic;
         }
-        args.get(index).setObjectValue(secondArg);
-        return combiner.invoke(firstArg);
+        return combiner == null
+            && CollectionUtils.isNotEmpty(functions)
+            && functions.stream().allMatch(Function::isDeterministic);
+    }
+
+    /**
+     * Returns true if the plan's results are cached.
+     *
+     * @return
+     */
+    public boolean isMemoized() {
+        return cache != null;
     }
 
     /**
-     * Chains the underlying functions, applying "Combiner" if set.
+     * Chains the underlying functions, applying "Combiner" if set, or returns
+     * the cached result for runningValue for deterministic plans.
      *
      * @param runningValue
      * @return
@@ -125,13 +170,43 @@ public class Plan implements Invokable {
         InvocationTargetException,
         InstantiationException {
 
+        return invoke(runningValue, null);
+    }
+
+    /**
+     * Invokes the plan, counting cache lookups in the passed stats if not
+     * null.
+     *
+     * @param runningValue
+     * @param stats
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public Object invoke(Object runningValue, MemoCache.Stats stats)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        if (cache != null) {
+            return cache.get(runningValue, this::invokeChain, stats);
+        }
+        return invokeChain(runningValue);
+    }
+
+    private Object invokeChain(Object runningValue)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
         boolean isFirst = true;
         Object glue = null;
         for (Function fn : functions) {
-            log.debug("Invoking function: {}", fn.getFunction());
             Object returnValue = fn.invoke(runningValue);
-            log.debug("runningValue = " + runningValue);
-            log.debug("returnValue = " + returnValue);
             if (combiner != null && !isFirst) {
                 final Object gl = glue;
                 log.debug(
@@ -154,6 +229,106 @@ public class Plan implements Invokable {
         return runningValue;
     }
 
+    /**
+     * Returns true if the plan has no combiner and every function in it has a
+     * batch counterpart, so invokeBatch calls each function once for all
+     * values.
+     *
+     * @return
+     */
+    public boolean isBatchable() {
+        return combiner == null
+            && CollectionUtils.isNotEmpty(functions)
+            && functions.stream().allMatch(Function::isBatchable);
+    }
+
+    /**
+     * Chains the underlying functions for each of the passed values, returning
+     * the results in the same order.  Each function is called once for all
+     * values if the plan is batchable, otherwise invoke is called for each
+     * value.
+     *
+     * @param runningValues
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public Object[] invokeBatch(Object[] runningValues)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        return invokeBatch(runningValues, null);
+    }
+
+    /**
+     * Invokes the plan for each of the passed values, counting cache lookups
+     * in the passed stats if not null.  Only values without a cached result
+     * are passed on to the functions.
+     *
+     * @param runningValues
+     * @param stats
+     * @return
+     * @throws SQLException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     */
+    public Object[] invokeBatch(Object[] runningValues, MemoCache.Stats stats)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        if (cache == null) {
+            return invokeChainBatch(runningValues);
+        }
+        final Object[] results = new Object[runningValues.length];
+        final List<Integer> missed = new ArrayList<>();
+        for (int i = 0; i < runningValues.length; ++i) {
+            results[i] = cache.getIfPresent(runningValues[i], stats);
+            if (results[i] == MemoCache.MISSING) {
+                missed.add(i);
+            }
+        }
+        if (missed.isEmpty()) {
+            return results;
+        }
+        final Object[] values = new Object[missed.size()];
+        for (int j = 0; j < values.length; ++j) {
+            values[j] = runningValues[missed.get(j)];
+        }
+        final Object[] computed = invokeChainBatch(values);
+        for (int j = 0; j < values.length; ++j) {
+            results[missed.get(j)] = computed[j];
+            cache.put(values[j], computed[j]);
+        }
+        return results;
+    }
+
+    private Object[] invokeChainBatch(Object[] runningValues)
+        throws SQLException,
+        IllegalAccessException,
+        InvocationTargetException,
+        InstantiationException {
+
+        if (!isBatchable()) {
+            final Object[] results = new Object[runningValues.length];
+            for (int i = 0; i < runningValues.length; ++i) {
+                results[i] = invokeChain(runningValues[i]);
+            }
+            return results;
+        }
+        Object[] results = runningValues;
+        for (Function fn : functions) {
+            results = fn.invokeBatch(results);
+        }
+        return results;
+    }
+
     protected void initialize(Class<?> columnType)
         throws ClassNotFoundException,
         InstantiationException,
@@ -190,6 +365,13 @@ public class Plan implements Invokable {
                 throw new IllegalArgumentException("Combiner: " + combiner.getFunctionName() + " can't be called for function: " + m.getName());
             }
         }
+
+        final Class<?> argType = getDynamicArgumentType();
+        final boolean isResultSetPlan = argType != null && ClassUtils.isAssignable(ResultSet.class, argType);
+        if (cache == null && !isResultSetPlan && isDeterministic()) {
+            cache = new MemoCache((cacheSize == null) ? DEFAULT_CACHE_SIZE : cacheSize);
+            log.debug("Caching up to {} results of deterministic plan", cache.getMaximumSize());
+        }
     }
 
     /**
@@ -21,11 +21,11 @@ import com.strider.datadefender.requirement.Requirement;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,6 +38,14 @@ import org.apache.commons.lang3.ClassUtils;
  * Very basic registry for classes that need to be instantiated for use by
  * requirement functions.
  *
+ * A single instance of each class is shared by all threads anonymizing
+ * tables, so requirement functions must be safe to call concurrently: data
+ * loaded once (dictionaries, values read from the database) can be shared,
+ * while anything changing from one call to the next, like a position in a
+ * shuffled list or a random number generator, should be kept per thread, for
+ * example with {@link ShuffledLists}, and random values should come from
+ * {@link #getRandomSource()}.
+ *
  * @author Zaahid Bateson <zaahid.bateson@ubc.ca>
  */
 @RequiredArgsConstructor
@@ -46,13 +54,54 @@ public class ClassAndFunctionRegistry {
 
     private static ClassAndFunctionRegistry instance = new ClassAndFunctionRegistry();
 
-    private Map<Class<?>, RequirementFunction> singletons = new HashMap<>();
-    private Set<String> autoResolvePackages = new LinkedHashSet<>();
+    private Map<Class<?>, RequirementFunction> singletons = new ConcurrentHashMap<>();
+    private Set<String> autoResolvePackages = new CopyOnWriteArraySet<>();
+    private volatile RandomSource randomSource = new RandomSource();
+    private volatile StringArena.Budget valueListBudget = new StringArena.Budget(0);
 
     public RequirementFunction getFunctionsSingleton(Class<?> cls) {
         return singletons.get(cls);
     }
 
+    /**
+     * Returns the source of random values used by requirement functions.
+     *
+     * @return
+     */
+    public RandomSource getRandomSource() {
+        return randomSource;
+    }
+
+    /**
+     * Sets the source of random values used by requirement functions, for
+     * example a seeded one for reproducible runs.
+     *
+     * @param randomSource
+     */
+    public void setRandomSource(RandomSource randomSource) {
+        this.randomSource = randomSource;
+    }
+
+    /**
+     * Returns the heap budget of value lists kept in a StringArena by
+     * requirement functions.
+     *
+     * @return
+     */
+    public StringArena.Budget getValueListBudget() {
+        return valueListBudget;
+    }
+
+    /**
+     * Sets the heap budget of value lists kept in a StringArena by
+     * requirement functions.
+     *
+     * @param valueListBudget
+     */
+    public void setValueListBudget(StringArena.Budget valueListBudget) {
+        this.valueListBudget = valueListBudget;
+    }
+
     /**
      * Clears any set auto resolve packages on the singleton instance.
      */
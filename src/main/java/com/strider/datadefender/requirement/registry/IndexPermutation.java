@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+/**
+ * A keyed pseudo-random permutation of the indexes 0 to size - 1, computed
+ * without storing or shuffling them.
+ *
+ * Indexes are encrypted with a small balanced Feistel network over the
+ * smallest even number of bits covering size, and "cycle-walked" (encrypted
+ * again) until the result is below size, which keeps it a permutation of
+ * [0, size).  Different keys give different permutations, and since get(i)
+ * only depends on i, ranges of a permutation can be walked independently.
+ */
+public class IndexPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final int size;
+    private final long key;
+    private final int halfBits;
+    private final long halfMask;
+
+    /**
+     * Creates a permutation of size indexes for the passed key.
+     *
+     * @param size
+     * @param key
+     */
+    public IndexPermutation(final int size, final long key) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        this.size = size;
+        this.key = key;
+        final int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(Math.max(0, size - 1)));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the permuted index at position i.
+     *
+     * @param i
+     * @return
+     * @throws IndexOutOfBoundsException if i isn't between 0 and size - 1
+     */
+    public int get(final int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        long x = i;
+        do {
+            x = encrypt(x);
+        } while (x >= size);
+        return (int) x;
+    }
+
+    private long encrypt(final long x) {
+        long left = x >>> halfBits;
+        long right = x & halfMask;
+        for (int round = 0; round < ROUNDS; ++round) {
+            final long next = left ^ (mix(right + key * (round + 1)) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * A read-only list of the lines of a UTF-8 text file, memory-mapped rather
+ * than loaded on the heap.
+ *
+ * Line start offsets are kept in an index file, also memory-mapped, so heap
+ * usage is independent of the size of the dictionary: getting a line is an
+ * index lookup followed by decoding the line's bytes.
+ *
+ * The index is written beside the dictionary as &lt;file&gt;.idx and re-used
+ * as long as the dictionary's size and modification time don't change.  If
+ * it can't be written there, a temporary index is created instead and deleted
+ * on exit.
+ *
+ * Lines are separated as with BufferedReader.readLine: by "\n", "\r" or
+ * "\r\n".
+ */
+@Log4j2
+public class MappedDictionary extends AbstractList<String> implements RandomAccess {
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final long MAGIC = 0x4444494458303031L;  // "DDIDX001"
+    private static final int HEADER_SIZE = 32;
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    private final Path file;
+    private final MappedByteBuffer[] data;
+    private final MappedByteBuffer[] index;
+    private final long length;
+    private final int size;
+
+    private MappedDictionary(final Path file, final Path indexFile) throws IOException {
+        this.file = file;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            length = ch.size();
+            data = map(ch);
+        }
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            index = map(ch);
+        }
+        size = (int) index[0].getLong(24);
+    }
+
+    /**
+     * Opens the passed file, reading or creating its index.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static MappedDictionary open(final Path file) throws IOException {
+        final long length = Files.size(file);
+        final long modified = Files.getLastModifiedTime(file).toMillis();
+        final Path indexFile = file.resolveSibling(file.getFileName() + INDEX_SUFFIX);
+        if (isValidIndex(indexFile, length, modified)) {
+            return new MappedDictionary(file, indexFile);
+        }
+        Path tmp;
+        try {
+            tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), INDEX_SUFFIX);
+        } catch (IOException e) {
+            log.debug("Unable to write an index beside {}, using a temporary file", file, e);
+            tmp = Files.createTempFile(file.getFileName().toString(), INDEX_SUFFIX);
+            tmp.toFile().deleteOnExit();
+            writeIndex(file, tmp, length, modified);
+            return new MappedDictionary(file, tmp);
+        }
+        try {
+            writeIndex(file, tmp, length, modified);
+            try {
+                Files.move(tmp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return new MappedDictionary(file, indexFile);
+    }
+
+    private static boolean isValidIndex(final Path indexFile, final long length, final long modified) {
+        if (!Files.isRegularFile(indexFile)) {
+            return false;
+        }
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header) >= 0) {
+                // keep reading
+            }
+            if (header.hasRemaining()) {
+                return false;
+            }
+            header.flip();
+            return header.getLong() == MAGIC
+                && header.getLong() == length
+                && header.getLong() == modified
+                && ch.size() == HEADER_SIZE + header.getLong() * Long.BYTES;
+        } catch (IOException e) {
+            log.debug("Unable to read index {}", indexFile, e);
+            return false;
+        }
+    }
+
+    private static void writeIndex(final Path file, final Path indexFile, final long length, final long modified)
+        throws IOException {
+        log.info("Indexing lines of {}", file);
+        long lines = 0;
+        try (InputStream in = Files.newInputStream(file);
+            FileChannel out = FileChannel.open(indexFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            buf.position(HEADER_SIZE);
+            final byte[] block = new byte[1 << 16];
+            long pos = 0;
+            long start = 0;
+            boolean afterCr = false;
+            for (int read; (read = in.read(block)) != -1; pos += read) {
+                for (int i = 0; i < read; ++i) {
+                    final byte b = block[i];
+                    if (afterCr && b == '\n') {
+                        ++start;
+                        afterCr = false;
+                        continue;
+                    }
+                    afterCr = false;
+                    if (b == '\n' || b == '\r') {
+                        lines = putOffset(out, buf, start, lines);
+                        start = pos + i + 1;
+                        afterCr = (b == '\r');
+                    }
+                }
+            }
+            if (start < pos) {
+                lines = putOffset(out, buf, start, lines);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putLong(length).putLong(modified).putLong(lines).flip();
+            out.write(header, 0);
+        }
+        log.info("Indexed {} lines of {}", lines, file);
+    }
+
+    private static long putOffset(final FileChannel out, final ByteBuffer buf, final long offset, final long lines)
+        throws IOException {
+        if (lines == Integer.MAX_VALUE) {
+            throw new IOException("Too many lines in dictionary, at most " + Integer.MAX_VALUE + " are supported");
+        }
+        if (!buf.hasRemaining()) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            buf.clear();
+        }
+        buf.putLong(offset);
+        return lines + 1;
+    }
+
+    private static MappedByteBuffer[] map(final FileChannel ch) throws IOException {
+        final long length = ch.size();
+        final MappedByteBuffer[] chunks = new MappedByteBuffer[(int) Math.max(1, (length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; ++i) {
+            final long offset = (long) i * CHUNK_SIZE;
+            chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, length - offset));
+        }
+        return chunks;
+    }
+
+    private static long getLong(final MappedByteBuffer[] chunks, final long pos) {
+        // offsets are 8-byte aligned, never crossing a chunk
+        return chunks[(int) (pos / CHUNK_SIZE)].getLong((int) (pos % CHUNK_SIZE));
+    }
+
+    private byte byteAt(final long pos) {
+        return data[(int) (pos / CHUNK_SIZE)].get((int) (pos % CHUNK_SIZE));
+    }
+
+    /**
+     * Returns the dictionary file.
+     *
+     * @return
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the line at the passed index, without its line terminator.
+     *
+     * @param i
+     * @return
+     */
+    @Override
+    public String get(final int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        final long start = getLong(index, HEADER_SIZE + (long) i * Long.BYTES);
+        long end = (i + 1 < size) ? getLong(index, HEADER_SIZE + (long) (i + 1) * Long.BYTES) : length;
+        if (end > start && byteAt(end - 1) == '\n') {
+            --end;
+            if (end > start && byteAt(end - 1) == '\r') {
+                --end;
+            }
+        } else if (end > start && byteAt(end - 1) == '\r') {
+            --end;
+        }
+        final byte[] bytes = new byte[(int) (end - start)];
+        final int chunk = (int) (start / CHUNK_SIZE);
+        final int offset = (int) (start % CHUNK_SIZE);
+        final int inChunk = Math.min(bytes.length, data[chunk].capacity() - offset);
+        data[chunk].duplicate().position(offset).get(bytes, 0, inChunk);
+        if (inChunk < bytes.length) {
+            data[chunk + 1].duplicate().position(0).get(bytes, inChunk, bytes.length - inChunk);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
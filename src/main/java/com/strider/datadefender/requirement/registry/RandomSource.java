@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Source of random values for requirement functions.
+ *
+ * Unseeded, values come from ThreadLocalRandom, so threads don't contend for
+ * a shared generator.  With a seed, each thread draws from its own
+ * SplittableRandom, which the anonymizer resets with startRow before a row's
+ * column is anonymized, deriving it from the seed, the table, column and the
+ * row's primary key values.  A row's values then don't depend on which
+ * thread, partition or batch it's anonymized in, so seeded runs with any
+ * number of threads and partitions produce the same output.
+ */
+public class RandomSource {
+
+    private final Long seed;
+    private final ThreadLocal<SplittableRandom> generators;
+    private final Random random = new Random(0) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected int next(final int bits) {
+            return RandomSource.this.nextInt() >>> (32 - bits);
+        }
+    };
+
+    /**
+     * Creates an unseeded source.
+     */
+    public RandomSource() {
+        this.seed = null;
+        this.generators = null;
+    }
+
+    /**
+     * Creates a source whose values are determined by the passed seed.
+     *
+     * @param seed
+     */
+    public RandomSource(final long seed) {
+        this.seed = seed;
+        this.generators = ThreadLocal.withInitial(() -> new SplittableRandom(seed));
+    }
+
+    /**
+     * Returns true if the source was created with a seed.
+     *
+     * @return
+     */
+    public boolean isSeeded() {
+        return seed != null;
+    }
+
+    /**
+     * Resets the current thread's generator for values of the row and column
+     * identified by the passed context, for example the table name, column
+     * name and primary key values.  Does nothing if the source isn't seeded.
+     *
+     * Each value of the context is hashed to 64 bits and mixed into the
+     * generator's seed in turn, so different contexts don't end up with the
+     * same generator in the predictable ways a polynomial hash would.
+     *
+     * @param context
+     */
+    public void startRow(final Object... context) {
+        if (seed != null) {
+            generators.set(new SplittableRandom(hash(seed, context)));
+        }
+    }
+
+    /**
+     * Returns a java.util.Random for classes needing one, drawing its values
+     * from this source on the calling thread.
+     *
+     * @return
+     */
+    public Random asRandom() {
+        return random;
+    }
+
+    /**
+     * Returns a generator for values that must be the same on every thread,
+     * like a shuffled list shared by all of them: seeded by the source's seed
+     * and the passed name, or unseeded if the source isn't seeded.
+     *
+     * @param name
+     * @return
+     */
+    public Random forName(final String name) {
+        if (seed == null) {
+            return new Random();
+        }
+        return new Random(mix(seed, hash(name)));
+    }
+
+    public int nextInt() {
+        return (seed == null) ? ThreadLocalRandom.current().nextInt() : generators.get().nextInt();
+    }
+
+    /**
+     * Returns a value between 0 (inclusive) and bound (exclusive).
+     *
+     * @param bound
+     * @return
+     */
+    public int nextInt(final int bound) {
+        return (seed == null) ? ThreadLocalRandom.current().nextInt(bound) : generators.get().nextInt(bound);
+    }
+
+    /**
+     * Returns a value between origin (inclusive) and bound (exclusive), or
+     * origin if they're equal.
+     *
+     * @param origin
+     * @param bound
+     * @return
+     */
+    public int nextInt(final int origin, final int bound) {
+        if (origin == bound) {
+            return origin;
+        }
+        return (seed == null)
+            ? ThreadLocalRandom.current().nextInt(origin, bound)
+            : generators.get().nextInt(origin, bound);
+    }
+
+    /**
+     * Returns a value between origin (inclusive) and bound (exclusive), or
+     * origin if they're equal.
+     *
+     * @param origin
+     * @param bound
+     * @return
+     */
+    public long nextLong(final long origin, final long bound) {
+        if (origin == bound) {
+            return origin;
+        }
+        return (seed == null)
+            ? ThreadLocalRandom.current().nextLong(origin, bound)
+            : generators.get().nextLong(origin, bound);
+    }
+
+    public double nextDouble() {
+        return (seed == null) ? ThreadLocalRandom.current().nextDouble() : generators.get().nextDouble();
+    }
+
+    public boolean nextBoolean() {
+        return (seed == null) ? ThreadLocalRandom.current().nextBoolean() : generators.get().nextBoolean();
+    }
+
+    private static long hash(final long seed, final Object[] values) {
+        long h = mix(seed, values.length);
+        for (final Object value : values) {
+            h = mix(h, hash(value));
+        }
+        return h;
+    }
+
+    /**
+     * Returns a 64-bit hash of the passed value: of the characters of a
+     * String, the bytes of a byte array or the value of an integer, and of
+     * the hashCode of other values.
+     */
+    private static long hash(final Object value) {
+        if (value == null) {
+            return 0x5DEECE66DL;
+        } else if (value instanceof Object[]) {
+            return hash(0x2545F4914F6CDD1DL, (Object[]) value);
+        } else if (value instanceof String) {
+            final String str = (String) value;
+            // FNV-1a over the string's UTF-16 code units
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < str.length(); ++i) {
+                h = (h ^ str.charAt(i)) * 0x100000001B3L;
+            }
+            return h;
+        } else if (value instanceof byte[]) {
+            long h = 0x84222325CBF29CE4L;
+            for (final byte b : (byte[]) value) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            return h;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+            || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            return ((BigInteger) value).longValue();
+        }
+        return value.hashCode();
+    }
+
+    private static long mix(final long seed, final long hash) {
+        long z = seed ^ (hash * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
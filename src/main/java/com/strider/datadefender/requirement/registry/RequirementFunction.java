@@ -26,5 +26,14 @@ package com.strider.datadefender.requirement.registry;
  * @author Zaahid Bateson <zaahid.bateson@ubc.ca>
  */
 public abstract class RequirementFunction {
-    
+
+    /**
+     * Returns the source functions should draw random values from, so seeded
+     * runs are reproducible.
+     *
+     * @return
+     */
+    protected RandomSource getRandom() {
+        return ClassAndFunctionRegistry.singleton().getRandomSource();
+    }
 }
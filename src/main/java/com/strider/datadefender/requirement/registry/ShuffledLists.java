@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named lists of values for requirement functions returning shuffled items,
+ * safe to use from several threads.
+ *
+ * A list is loaded once and shared by all threads, which walk a single
+ * IndexPermutation of the list's indexes together, taking positions from a
+ * shared counter.  Each value is used once before starting over with a
+ * permutation for a new key, whichever threads use them.  A cursor only keeps
+ * a key and a position, rather than a shuffled copy of the list.
+ *
+ * Lists are never modified once loaded.  Lists loaded with load are copied
+ * unless they're a StringArena, and lists loaded from files with loadFile are
+ * memory-mapped MappedDictionary instances rather than copied on the heap.
+ *
+ * If the registry's RandomSource is seeded, items are instead picked at random
+ * from the list with the current row's generator, so a row gets the same item
+ * whichever thread anonymizes it, but items may repeat before all of them
+ * have been used.
+ */
+public class ShuffledLists {
+
+    @FunctionalInterface
+    public interface Loader<E extends Exception> {
+        List<String> load() throws E;
+    }
+
+    /**
+     * The permutation for a cycle through a list.
+     */
+    private static final class Cycle {
+        final long number;
+        final IndexPermutation order;
+
+        Cycle(final long number, final IndexPermutation order) {
+            this.number = number;
+            this.order = order;
+        }
+    }
+
+    private static class Cursor {
+        final List<String> list;
+        final long key = ThreadLocalRandom.current().nextLong();
+        final AtomicLong position = new AtomicLong();
+        volatile Cycle cycle;
+
+        Cursor(final List<String> list) {
+            this.list = list;
+            cycle = cycleFor(0);
+        }
+
+        /**
+         * Returns the permutation for the passed cycle, keyed by the cursor's
+         * key and the cycle's number so it can be created again by a thread
+         * still finishing a previous cycle.
+         */
+        private Cycle cycleFor(final long number) {
+            return new Cycle(number, new IndexPermutation(list.size(), key ^ (number * 0x9E3779B97F4A7C15L)));
+        }
+
+        String next() {
+            final long p = position.getAndIncrement();
+            final long number = p / list.size();
+            Cycle current = cycle;
+            if (current.number != number) {
+                current = cycleFor(number);
+                if (number > cycle.number) {
+                    cycle = current;
+                }
+            }
+            return list.get(current.order.get((int) (p % list.size())));
+        }
+    }
+
+    private final ConcurrentMap<String, List<String>> lists = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cursor> cursors = new ConcurrentHashMap<>();
+
+    /**
+     * Returns true if a list with the passed name has been loaded.
+     *
+     * @param name
+     * @return
+     */
+    public boolean contains(final String name) {
+        return lists.containsKey(name);
+    }
+
+    /**
+     * Returns the named list, calling loader to load it if it hasn't been
+     * loaded yet.  Only one thread loads a list, others wait for it.  Lists
+     * are copied unless they're an (immutable) StringArena.
+     *
+     * @param <E>
+     * @param name
+     * @param loader
+     * @return
+     * @throws E
+     */
+    public <E extends Exception> List<String> load(final String name, final Loader<E> loader) throws E {
+        List<String> list = lists.get(name);
+        if (list == null) {
+            synchronized (lists) {
+                list = lists.get(name);
+                if (list == null) {
+                    list = loader.load();
+                    if (!(list instanceof StringArena)) {
+                        list = Collections.unmodifiableList(new ArrayList<>(list));
+                    }
+                    lists.put(name, list);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the named list, memory-mapping the passed file as a
+     * MappedDictionary if it hasn't been loaded yet.
+     *
+     * @param name
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public List<String> loadFile(final String name, final Path file) throws IOException {
+        List<String> list = lists.get(name);
+        if (list == null) {
+            synchronized (lists) {
+                list = lists.get(name);
+                if (list == null) {
+                    list = MappedDictionary.open(file);
+                    lists.put(name, list);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the named list, or null if it hasn't been loaded.
+     *
+     * @param name
+     * @return
+     */
+    public List<String> get(final String name) {
+        return lists.get(name);
+    }
+
+    /**
+     * Returns the next item of the permutation of the named list.
+     *
+     * @param name
+     * @return
+     * @throws NoSuchElementException if the list is empty or wasn't loaded
+     */
+    public String next(final String name) {
+        final RandomSource random = ClassAndFunctionRegistry.singleton().getRandomSource();
+        if (random.isSeeded()) {
+            final List<String> list = lists.get(name);
+            if (list == null || list.isEmpty()) {
+                throw new NoSuchElementException("No values loaded for " + name);
+            }
+            return list.get(random.nextInt(list.size()));
+        }
+        Cursor cursor = cursors.get(name);
+        if (cursor == null) {
+            final List<String> list = lists.get(name);
+            if (list == null || list.isEmpty()) {
+                throw new NoSuchElementException("No values loaded for " + name);
+            }
+            cursor = cursors.computeIfAbsent(name, (n) -> new Cursor(list));
+        }
+        return cursor.next();
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * A read-only list of strings stored compactly as UTF-8 bytes.
+ *
+ * Values are appended to large byte array segments, each prefixed by its
+ * length, and only a long position per value is kept besides them, avoiding
+ * the overhead of a String object per value.  Strings are decoded when read
+ * with get, while values can be hashed and compared with UTF-8 bytes without
+ * decoding them.
+ *
+ * Segments are counted against a {@link Budget} shared by all arenas.  Once
+ * it's exceeded, further segments are written to a temporary file which is
+ * memory-mapped when the arena is built.
+ */
+@Log4j2
+public class StringArena extends AbstractList<String> implements RandomAccess {
+
+    private static final int MIN_SEGMENT_SIZE = 1 << 13;
+    private static final int MAX_SEGMENT_SIZE = 1 << 22;
+
+    /**
+     * Number of bytes of heap arenas may use for their segments together.
+     */
+    public static class Budget {
+
+        private final long limit;
+        private final AtomicLong used = new AtomicLong();
+
+        /**
+         * Creates a budget of limit bytes, or an unlimited one if limit is 0
+         * or less.
+         *
+         * @param limit
+         */
+        public Budget(final long limit) {
+            this.limit = (limit <= 0) ? Long.MAX_VALUE : limit;
+        }
+
+        public long getLimit() {
+            return limit;
+        }
+
+        public long getUsed() {
+            return used.get();
+        }
+
+        boolean reserve(final long bytes) {
+            if (used.addAndGet(bytes) > limit) {
+                used.addAndGet(-bytes);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Appends values to a new StringArena.
+     */
+    public static class Builder {
+
+        private final Budget budget;
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private final List<long[]> spilled = new ArrayList<>();
+        private long[] positions = new long[16];
+        private int size;
+        private byte[] segment = new byte[MIN_SEGMENT_SIZE];
+        private int length;
+        private Path spillFile;
+        private FileChannel spill;
+
+        public Builder(final Budget budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Appends the passed value, which may be null.
+         *
+         * @param value
+         * @return
+         * @throws IOException if the value can't be spilled to a temporary file
+         */
+        public Builder add(final String value) throws IOException {
+            final byte[] bytes = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+            final int header = (bytes == null) ? 0 : bytes.length + 1;
+            final int needed = varintSize(header) + ((bytes == null) ? 0 : bytes.length);
+            if (length + needed > segment.length) {
+                if (length > 0) {
+                    finishSegment();
+                }
+                segment = new byte[Math.max(needed, Math.min(MAX_SEGMENT_SIZE, segment.length * 2))];
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = ((long) segments.size() << 32) | length;
+            length = writeVarint(segment, length, header);
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, segment, length, bytes.length);
+                length += bytes.length;
+            }
+            return this;
+        }
+
+        private void finishSegment() throws IOException {
+            if (spill == null && budget.reserve(length)) {
+                segments.add(ByteBuffer.wrap((length == segment.length) ? segment : Arrays.copyOf(segment, length)));
+            } else {
+                if (spill == null) {
+                    spillFile = Files.createTempFile("datadefender-values", ".tmp");
+                    spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    log.info("Value list memory budget of {} bytes exceeded, spilling values to {}",
+                        budget.getLimit(), spillFile);
+                }
+                final long offset = spill.size();
+                final ByteBuffer buf = ByteBuffer.wrap(segment, 0, length);
+                while (buf.hasRemaining()) {
+                    spill.write(buf, offset + buf.position());
+                }
+                spilled.add(new long[] { segments.size(), offset, length });
+                segments.add(null);
+            }
+            length = 0;
+        }
+
+        /**
+         * Returns the built arena.  The builder can't be used afterwards.
+         *
+         * @return
+         * @throws IOException
+         */
+        public StringArena build() throws IOException {
+            if (length > 0) {
+                finishSegment();
+            }
+            segment = null;
+            if (spill != null) {
+                try {
+                    for (final long[] s : spilled) {
+                        segments.set((int) s[0], spill.map(FileChannel.MapMode.READ_ONLY, s[1], s[2]));
+                    }
+                } finally {
+                    spill.close();
+                    try {
+                        Files.delete(spillFile);
+                    } catch (IOException e) {
+                        spillFile.toFile().deleteOnExit();
+                    }
+                }
+            }
+            return new StringArena(segments.toArray(new ByteBuffer[segments.size()]), Arrays.copyOf(positions, size));
+        }
+    }
+
+    private final ByteBuffer[] segments;
+    private final long[] positions;
+
+    private StringArena(final ByteBuffer[] segments, final long[] positions) {
+        this.segments = segments;
+        this.positions = positions;
+    }
+
+    /**
+     * Returns an arena of the passed values.
+     *
+     * @param values
+     * @param budget
+     * @return
+     * @throws IOException
+     */
+    public static StringArena of(final Iterable<String> values, final Budget budget) throws IOException {
+        final Builder builder = new Builder(budget);
+        for (final String value : values) {
+            builder.add(value);
+        }
+        return builder.build();
+    }
+
+    private static int varintSize(int value) {
+        int n = 1;
+        while ((value >>>= 7) != 0) {
+            ++n;
+        }
+        return n;
+    }
+
+    private static int writeVarint(final byte[] dst, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[offset++] = (byte) value;
+        return offset;
+    }
+
+    @Override
+    public int size() {
+        return positions.length;
+    }
+
+    private void checkIndex(final int i) {
+        if (i < 0 || i >= positions.length) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + positions.length);
+        }
+    }
+
+    private static int readHeader(final ByteBuffer segment, int offset) {
+        int header = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = segment.get(offset++);
+            header |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return header;
+            }
+        }
+    }
+
+    private static int hash(final ByteBuffer segment, final int offset, final int length) {
+        int h = 0x811C9DC5;
+        for (int i = offset; i < offset + length; ++i) {
+            h = (h ^ (segment.get(i) & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns a hash of the passed UTF-8 bytes, equal to hash(i) of a value
+     * with the same bytes, or 0 for null.
+     *
+     * @param utf8
+     * @return
+     */
+    public static int hash(final byte[] utf8) {
+        return (utf8 == null) ? 0 : hash(ByteBuffer.wrap(utf8), 0, utf8.length);
+    }
+
+    /**
+     * Returns the hash of the value at position i, without decoding it.
+     *
+     * @param i
+     * @return
+     */
+    public int hash(final int i) {
+        checkIndex(i);
+        final ByteBuffer segment = segments[(int) (positions[i] >>> 32)];
+        final int offset = (int) positions[i];
+        final int header = readHeader(segment, offset);
+        return (header == 0) ? 0 : hash(segment, offset + varintSize(header), header - 1);
+    }
+
+    /**
+     * Returns true if the value at position i is encoded by the passed UTF-8
+     * bytes, or if both are null, without decoding it.
+     *
+     * @param i
+     * @param utf8
+     * @return
+     */
+    public boolean equalsAt(final int i, final byte[] utf8) {
+        checkIndex(i);
+        final ByteBuffer segment = segments[(int) (positions[i] >>> 32)];
+        final int offset = (int) positions[i];
+        final int header = readHeader(segment, offset);
+        if (header == 0 || utf8 == null) {
+            return header == 0 && utf8 == null;
+        }
+        if (header - 1 != utf8.length) {
+            return false;
+        }
+        final int from = offset + varintSize(header);
+        for (int j = 0; j < utf8.length; ++j) {
+            if (segment.get(from + j) != utf8[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String get(final int i) {
+        checkIndex(i);
+        final ByteBuffer segment = segments[(int) (positions[i] >>> 32)];
+        final int header = readHeader(segment, (int) positions[i]);
+        if (header == 0) {
+            return null;
+        }
+        final int offset = (int) positions[i] + varintSize(header);
+        if (segment.hasArray()) {
+            return new String(segment.array(), segment.arrayOffset() + offset, header - 1, StandardCharsets.UTF_8);
+        }
+        final byte[] bytes = new byte[header - 1];
+        segment.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
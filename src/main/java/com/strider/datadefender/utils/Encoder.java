@@ -17,16 +17,10 @@ package com.strider.datadefender.utils;
 
 import java.io.UnsupportedEncodingException;
 
-import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Base64;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.SecretKeySpec;
 
 import lombok.extern.log4j.Log4j2;
@@ -40,59 +34,57 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public final class Encoder {
     
-    private static SecretKeySpec secretKey;
-    private static byte[] key;
-    
     /**
      * Empty constructor 
      */
     public Encoder() {
     }
     
-    public static void setKey(String myKey) {
-        MessageDigest sha = null;
-        
+    /**
+     * Returns the AES key {@link EncryptionEngine} derives from the passed
+     * secret for its Base64 encoded values.  Keys are derived on every call,
+     * EncryptionEngine keeps them for each secret.  {@link FormatPreservingEngine}
+     * derives a key of its own from the same secret.
+     *
+     * @param myKey
+     * @return the key, or null if it couldn't be created
+     */
+    public static SecretKeySpec createKey(String myKey) {
         try {
-            key = myKey.getBytes("UTF-8");
-            sha = MessageDigest.getInstance("SHA-1");
+            byte[] key = myKey.getBytes("UTF-8");
+            MessageDigest sha = MessageDigest.getInstance("SHA-1");
             key = sha.digest(key);
             key = Arrays.copyOf(key, 16); 
-            secretKey = new SecretKeySpec(key, "AES");
+            return new SecretKeySpec(key, "AES");
         } 
         catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
             log.debug(e);
         }
+        return null;
     }    
     
     
+    /**
+     * Encrypts the passed string with the key derived from secret, see
+     * {@link EncryptionEngine}.
+     *
+     * @param strToEncrypt
+     * @param secret
+     * @return the Base64 encoded encrypted string, or null on failure
+     */
     public String encrypt(String strToEncrypt, String secret) {
-        
-      try {
-            setKey(secret);
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            return Base64.getEncoder().encodeToString(cipher.doFinal(strToEncrypt.getBytes("UTF-8")));
-        } catch (UnsupportedEncodingException | InvalidKeyException | NoSuchAlgorithmException | 
-                 BadPaddingException | IllegalBlockSizeException | NoSuchPaddingException e) {
-            log.error("Error while encrypting: " + e.toString());
-        }
-      
-        return null;
-
-    }        
+        return EncryptionEngine.forSecret(secret).encrypt(strToEncrypt);
+    }
 
- 
+    /**
+     * Decrypts a string returned by encrypt with the same secret.
+     *
+     * @param strToDecrypt
+     * @param secret
+     * @return the decrypted string, or null on failure
+     */
     public String decrypt(String strToDecrypt, String secret) {
-        try {
-            setKey(secret);
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5PADDING");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            return new String(cipher.doFinal(Base64.getDecoder().decode(strToDecrypt)));
-        } catch (InvalidKeyException | NoSuchAlgorithmException | BadPaddingException | 
-                 IllegalBlockSizeException | NoSuchPaddingException e) {
-            log.error("Error while decrypting: " + e.toString());
-        }
-        return null;
+        return EncryptionEngine.forSecret(secret).decrypt(strToDecrypt);
     }
     
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Reversible AES encryption of values with a key derived from a secret, as
+ * done by {@link Encoder}, but set up once per secret.
+ *
+ * Engines are cached by secret, and keep an initialized Cipher per thread
+ * for each mode, so encrypting a value doesn't derive the key or look up and
+ * initialize a Cipher again.
+ */
+@Log4j2
+public final class EncryptionEngine {
+
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final ConcurrentMap<String, EncryptionEngine> engines = new ConcurrentHashMap<>();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Cipher> encryptors;
+    private final ThreadLocal<Cipher> decryptors;
+
+    private EncryptionEngine(final String secret) {
+        key = Encoder.createKey(secret);
+        encryptors = ThreadLocal.withInitial(() -> createCipher(Cipher.ENCRYPT_MODE));
+        decryptors = ThreadLocal.withInitial(() -> createCipher(Cipher.DECRYPT_MODE));
+    }
+
+    /**
+     * Returns the engine for the passed secret.
+     *
+     * @param secret
+     * @return
+     */
+    public static EncryptionEngine forSecret(final String secret) {
+        return engines.computeIfAbsent(secret, EncryptionEngine::new);
+    }
+
+    private Cipher createCipher(final int mode) {
+        try {
+            final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(mode, key);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + TRANSFORMATION + " cipher", e);
+        }
+    }
+
+    /**
+     * Returns the Base64 encoded encryption of the passed value, or null if
+     * the value is null or couldn't be encrypted.
+     *
+     * @param value
+     * @return
+     */
+    public String encrypt(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            final byte[] encrypted = encryptors.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(encrypted);
+        } catch (GeneralSecurityException e) {
+            log.error("Error while encrypting: " + e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the decryption of a value returned by encrypt, or null if the
+     * value is null or couldn't be decrypted.
+     *
+     * @param value
+     * @return
+     */
+    public String decrypt(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            final byte[] decrypted = decryptors.get().doFinal(Base64.getDecoder().decode(value));
+            return new String(decrypted, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.error("Error while decrypting: " + e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Returns an array of the encryptions of the passed values.
+     *
+     * @param values
+     * @return
+     */
+    public String[] encryptBatch(final String[] values) {
+        final String[] encrypted = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            encrypted[i] = encrypt(values[i]);
+        }
+        return encrypted;
+    }
+
+    /**
+     * Returns an array of the decryptions of the passed values.
+     *
+     * @param values
+     * @return
+     */
+    public String[] decryptBatch(final String[] values) {
+        final String[] decrypted = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            decrypted[i] = decrypt(values[i]);
+        }
+        return decrypted;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The FF1 format-preserving encryption mode of NIST SP 800-38G, with AES.
+ *
+ * Encrypts a string of numerals of the cipher's radix (each between 0 and
+ * radix - 1) into another string of numerals of the same length.  Strings of
+ * a single numeral, which FF1 doesn't support, are shifted by an offset
+ * derived from the key and tweak instead, which is reversible but leaks
+ * equality of such values.
+ *
+ * Instances keep an initialized Cipher per thread, and are safe to use from
+ * several threads.
+ */
+public final class FF1 {
+
+    private static final int ROUNDS = 10;
+    private static final int BLOCK = 16;
+
+    private final int radix;
+    private final BigInteger bigRadix;
+    private final ThreadLocal<Cipher> ciphers;
+
+    /**
+     * Creates an FF1 cipher of the passed radix, between 2 and 65536.
+     *
+     * @param key
+     * @param radix
+     */
+    public FF1(final SecretKeySpec key, final int radix) {
+        if (radix < 2 || radix > 65536) {
+            throw new IllegalArgumentException("Radix must be between 2 and 65536: " + radix);
+        }
+        this.radix = radix;
+        this.bigRadix = BigInteger.valueOf(radix);
+        this.ciphers = ThreadLocal.withInitial(() -> {
+            try {
+                final Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, key);
+                return cipher;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialize AES cipher", e);
+            }
+        });
+    }
+
+    public int getRadix() {
+        return radix;
+    }
+
+    /**
+     * Returns the encryption of the passed numerals.
+     *
+     * @param numerals
+     * @param tweak
+     * @return
+     */
+    public int[] encrypt(final int[] numerals, final byte[] tweak) {
+        return cipher(numerals, tweak, true);
+    }
+
+    /**
+     * Returns the decryption of numerals returned by encrypt with the same
+     * tweak.
+     *
+     * @param numerals
+     * @param tweak
+     * @return
+     */
+    public int[] decrypt(final int[] numerals, final byte[] tweak) {
+        return cipher(numerals, tweak, false);
+    }
+
+    private int[] cipher(final int[] x, final byte[] tweak, final boolean encrypt) {
+        for (final int numeral : x) {
+            if (numeral < 0 || numeral >= radix) {
+                throw new IllegalArgumentException("Numeral out of range for radix " + radix + ": " + numeral);
+            }
+        }
+        final int n = x.length;
+        if (n < 2) {
+            return shift(x, tweak, encrypt);
+        }
+        final Cipher aes = ciphers.get();
+        final int t = tweak.length;
+        final int u = n / 2;
+        final int v = n - u;
+        final long longModU = longPow(u);
+        final long longModV = longPow(v);
+        final BigInteger modU = (longModV < 0) ? bigRadix.pow(u) : BigInteger.valueOf(longModU);
+        final BigInteger modV = (longModV < 0) ? bigRadix.pow(v) : BigInteger.valueOf(longModV);
+        // ceil(ceil(v * log2(radix)) / 8), computed exactly
+        final int b = (modV.subtract(BigInteger.ONE).bitLength() + 7) / 8;
+        final int d = 4 * ((b + 3) / 4) + 4;
+
+        final byte[] p = new byte[] {
+            1, 2, 1,
+            (byte) (radix >> 16), (byte) (radix >> 8), (byte) radix,
+            10, (byte) u,
+            (byte) (n >> 24), (byte) (n >> 16), (byte) (n >> 8), (byte) n,
+            (byte) (t >> 24), (byte) (t >> 16), (byte) (t >> 8), (byte) t
+        };
+        final int qLength = t + Math.floorMod(-t - b - 1, BLOCK) + 1 + b;
+        final byte[] q = new byte[qLength];
+        System.arraycopy(tweak, 0, q, 0, t);
+        // the CBC-MAC of P is the same for each round
+        final byte[] r = new byte[BLOCK];
+        final byte[] y = new byte[d];
+        try {
+            aes.update(p, 0, BLOCK, p, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        final int[] result = new int[n];
+
+        if (longModV >= 0) {
+            // numbers fit in a long, see longPow
+            long a = longNum(x, 0, u);
+            long bb = longNum(x, u, n);
+            for (int j = 0; j < ROUNDS; ++j) {
+                final int i = encrypt ? j : ROUNDS - 1 - j;
+                q[qLength - b - 1] = (byte) i;
+                long num = encrypt ? bb : a;
+                for (int k = qLength - 1; k >= qLength - b; --k, num >>>= 8) {
+                    q[k] = (byte) num;
+                }
+                prf(aes, p, q, r, y);
+                final long mod = (i % 2 == 0) ? longModU : longModV;
+                long ym = 0;
+                for (final byte yb : y) {
+                    ym = ((ym << 8) | (yb & 0xFF)) % mod;
+                }
+                if (encrypt) {
+                    final long c = (a + ym) % mod;
+                    a = bb;
+                    bb = c;
+                } else {
+                    final long c = Math.floorMod(bb - ym, mod);
+                    bb = a;
+                    a = c;
+                }
+            }
+            longStr(a, result, 0, u);
+            longStr(bb, result, u, n);
+            return result;
+        }
+
+        BigInteger a = num(x, 0, u);
+        BigInteger bb = num(x, u, n);
+        for (int j = 0; j < ROUNDS; ++j) {
+            final int i = encrypt ? j : ROUNDS - 1 - j;
+            q[qLength - b - 1] = (byte) i;
+            putBytes(encrypt ? bb : a, q, qLength - b, b);
+            prf(aes, p, q, r, y);
+            final BigInteger mod = (i % 2 == 0) ? modU : modV;
+            if (encrypt) {
+                final BigInteger c = a.add(new BigInteger(1, y)).mod(mod);
+                a = bb;
+                bb = c;
+            } else {
+                final BigInteger c = bb.subtract(new BigInteger(1, y)).mod(mod);
+                bb = a;
+                a = c;
+            }
+        }
+        str(a, result, 0, u);
+        str(bb, result, u, n);
+        return result;
+    }
+
+    /**
+     * Writes the first y.length bytes of the PRF of P || Q into y: the AES
+     * CBC-MAC of P || Q, extended by encrypting it xor [j] for j = 1, 2...
+     * The passed cipheredP is the encryption of P.
+     */
+    private static void prf(final Cipher aes, final byte[] cipheredP, final byte[] q, final byte[] r, final byte[] y) {
+        try {
+            System.arraycopy(cipheredP, 0, r, 0, BLOCK);
+            for (int off = 0; off < q.length; off += BLOCK) {
+                for (int k = 0; k < BLOCK; ++k) {
+                    r[k] ^= q[off + k];
+                }
+                aes.update(r, 0, BLOCK, r, 0);
+            }
+            System.arraycopy(r, 0, y, 0, Math.min(BLOCK, y.length));
+            for (int j = 1; j * BLOCK < y.length; ++j) {
+                final byte[] block = r.clone();
+                for (int k = 0; k < 4; ++k) {
+                    block[BLOCK - 1 - k] ^= (byte) (j >> (8 * k));
+                }
+                aes.update(block, 0, BLOCK, block, 0);
+                System.arraycopy(block, 0, y, j * BLOCK, Math.min(BLOCK, y.length - j * BLOCK));
+            }
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns radix to the power of m, or -1 if it's 2^55 or more, above which
+     * the reduction of y in cipher could overflow.
+     */
+    private long longPow(final int m) {
+        long value = 1;
+        for (int i = 0; i < m; ++i) {
+            if (value >= (1L << 55) / radix) {
+                return -1;
+            }
+            value *= radix;
+        }
+        return value;
+    }
+
+    private long longNum(final int[] x, final int from, final int to) {
+        long value = 0;
+        for (int i = from; i < to; ++i) {
+            value = value * radix + x[i];
+        }
+        return value;
+    }
+
+    private void longStr(long value, final int[] dst, final int from, final int to) {
+        for (int i = to - 1; i >= from; --i) {
+            dst[i] = (int) (value % radix);
+            value /= radix;
+        }
+    }
+
+    private int[] shift(final int[] x, final byte[] tweak, final boolean encrypt) {
+        if (x.length == 0) {
+            return new int[0];
+        }
+        final byte[] block = new byte[BLOCK];
+        block[0] = (byte) 0xFF;
+        for (int i = 0; i < tweak.length; ++i) {
+            block[1 + i % (BLOCK - 1)] ^= tweak[i];
+        }
+        final byte[] enc = ciphers.get().update(block);
+        final int offset = new BigInteger(1, enc).mod(bigRadix).intValue();
+        return new int[] { Math.floorMod(x[0] + (encrypt ? offset : -offset), radix) };
+    }
+
+    private BigInteger num(final int[] x, final int from, final int to) {
+        BigInteger value = BigInteger.ZERO;
+        for (int i = from; i < to; ++i) {
+            value = value.multiply(bigRadix).add(BigInteger.valueOf(x[i]));
+        }
+        return value;
+    }
+
+    private void str(BigInteger value, final int[] dst, final int from, final int to) {
+        for (int i = to - 1; i >= from; --i) {
+            final BigInteger[] qr = value.divideAndRemainder(bigRadix);
+            dst[i] = qr[1].intValue();
+            value = qr[0];
+        }
+    }
+
+    private static void putBytes(final BigInteger value, final byte[] dst, final int offset, final int length) {
+        final byte[] bytes = value.toByteArray();
+        Arrays.fill(dst, offset, offset + length, (byte) 0);
+        final int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy, dst, offset + length - copy, copy);
+    }
+}
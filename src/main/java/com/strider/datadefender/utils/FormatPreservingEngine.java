@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Reversible encryption of values keeping their length and format, with FF1
+ * and an AES-256 key derived from a secret with HMAC-SHA256.  The key is
+ * distinct from the one {@link Encoder} derives from the same secret for
+ * {@link EncryptionEngine}, so the two ciphers never share a key.
+ *
+ * The ASCII digits of a value are encrypted together into other digits, and
+ * its ASCII letters into other letters, each letter keeping its case.  Other
+ * characters (separators like '-' or ' ', other letters) stay in place, so
+ * "123-456-789" is encrypted into another 11 character string of three groups
+ * of digits separated by dashes.
+ *
+ * As with any format-preserving encryption, values with few digits or letters
+ * are weak: NIST recommends at least a million possible values, that is six
+ * digits or five letters.
+ */
+public final class FormatPreservingEngine {
+
+    private static final byte[] DIGITS_TWEAK = { 'D' };
+    private static final byte[] LETTERS_TWEAK = { 'L' };
+    private static final byte[] KEY_LABEL = "ff1".getBytes(StandardCharsets.US_ASCII);
+    private static final ConcurrentMap<String, FormatPreservingEngine> engines = new ConcurrentHashMap<>();
+
+    private final FF1 digits;
+    private final FF1 letters;
+
+    private FormatPreservingEngine(final String secret) {
+        final SecretKeySpec key = createKey(secret);
+        digits = new FF1(key, 10);
+        letters = new FF1(key, 26);
+    }
+
+    /**
+     * Returns the FF1 key for the passed secret, HMAC-SHA256(secret, "ff1").
+     *
+     * @param secret
+     * @return
+     */
+    static SecretKeySpec createKey(final String secret) {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) {
+            // HMAC pads keys with zeros, so this is the empty key, which
+            // SecretKeySpec doesn't accept
+            bytes = new byte[1];
+        }
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(bytes, "HmacSHA256"));
+            return new SecretKeySpec(mac.doFinal(KEY_LABEL), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to derive the FF1 key", e);
+        }
+    }
+
+    /**
+     * Returns the engine for the passed secret.
+     *
+     * @param secret
+     * @return
+     */
+    public static FormatPreservingEngine forSecret(final String secret) {
+        return engines.computeIfAbsent(secret, FormatPreservingEngine::new);
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private String cipher(final String value, final boolean encrypt) {
+        if (value == null) {
+            return null;
+        }
+        final char[] chars = value.toCharArray();
+        int nDigits = 0;
+        int nLetters = 0;
+        for (final char c : chars) {
+            if (isDigit(c)) {
+                ++nDigits;
+            } else if (isLetter(c)) {
+                ++nLetters;
+            }
+        }
+        int[] d = new int[nDigits];
+        int[] l = new int[nLetters];
+        nDigits = 0;
+        nLetters = 0;
+        for (final char c : chars) {
+            if (isDigit(c)) {
+                d[nDigits++] = c - '0';
+            } else if (isLetter(c)) {
+                l[nLetters++] = Character.toLowerCase(c) - 'a';
+            }
+        }
+        d = encrypt ? digits.encrypt(d, DIGITS_TWEAK) : digits.decrypt(d, DIGITS_TWEAK);
+        l = encrypt ? letters.encrypt(l, LETTERS_TWEAK) : letters.decrypt(l, LETTERS_TWEAK);
+        nDigits = 0;
+        nLetters = 0;
+        for (int i = 0; i < chars.length; ++i) {
+            final char c = chars[i];
+            if (isDigit(c)) {
+                chars[i] = (char) ('0' + d[nDigits++]);
+            } else if (isLetter(c)) {
+                chars[i] = (char) (((c >= 'a') ? 'a' : 'A') + l[nLetters++]);
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the encryption of the passed value, of the same length and
+     * format, or null if the value is null.
+     *
+     * @param value
+     * @return
+     */
+    public String encrypt(final String value) {
+        return cipher(value, true);
+    }
+
+    /**
+     * Returns the decryption of a value returned by encrypt, or null if the
+     * value is null.
+     *
+     * @param value
+     * @return
+     */
+    public String decrypt(final String value) {
+        return cipher(value, false);
+    }
+
+    /**
+     * Returns an array of the encryptions of the passed values.
+     *
+     * @param values
+     * @return
+     */
+    public String[] encryptBatch(final String[] values) {
+        final String[] encrypted = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            encrypted[i] = encrypt(values[i]);
+        }
+        return encrypted;
+    }
+
+    /**
+     * Returns an array of the decryptions of the passed values.
+     *
+     * @param values
+     * @return
+     */
+    public String[] decryptBatch(final String[] values) {
+        final String[] decrypted = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            decrypted[i] = decrypt(values[i]);
+        }
+        return decrypted;
+    }
+}
@@ -31,7 +31,7 @@ import java.util.regex.Pattern;
  * @author Zaahid Bateson
  */
 public class LikeMatcher {
-    final private String regex;
+    final private Pattern regex;
 
     /**
      * Initializes a LikeMatcher with the given pattern.
@@ -55,7 +55,7 @@ public class LikeMatcher {
         }
 
         reg.append('$');
-        this.regex = reg.toString();
+        this.regex = Pattern.compile(reg.toString());
     }
 
     /**
@@ -65,7 +65,7 @@ public class LikeMatcher {
      * @return
      */
     public boolean matches(final String str) {
-        return str.toLowerCase(Locale.ENGLISH).matches(regex);
+        return regex.matcher(str.toLowerCase(Locale.ENGLISH)).matches();
     }
 }
 
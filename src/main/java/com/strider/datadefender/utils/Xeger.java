@@ -17,8 +17,12 @@
  */
 package com.strider.datadefender.utils;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import dk.brics.automaton.Automaton;
 import dk.brics.automaton.RegExp;
@@ -29,9 +33,66 @@ import dk.brics.automaton.Transition;
  * An object that will generate text from a regular expression. In a way, it's
  * the opposite of a regular expression matcher: an instance of this class will
  * produce text that is guaranteed to match the regular expression passed in.
+ *
+ * Regular expressions are compiled once into flat arrays of each state's
+ * transitions, cached by expression, so creating an instance for an
+ * expression that was already used is cheap.
  */
 public class Xeger {
-    private final Automaton automaton;
+
+    /**
+     * Transitions of an automaton in flat arrays, transitions of state s being
+     * at indexes first[s] to first[s + 1] - 1, sorted as by
+     * State.getSortedTransitions(true).  The initial state is state 0.
+     */
+    private static final class Compiled {
+        final boolean[] accept;
+        final int[] first;
+        final char[] min;
+        final char[] max;
+        final int[] dest;
+
+        Compiled(final Automaton automaton) {
+            final Map<State, Integer> index = new HashMap<>();
+            final State initial = automaton.getInitialState();
+            index.put(initial, 0);
+            for (final State state : automaton.getStates()) {
+                index.putIfAbsent(state, index.size());
+            }
+            final State[] states = new State[index.size()];
+            index.forEach((state, i) -> states[i] = state);
+
+            accept = new boolean[states.length];
+            first = new int[states.length + 1];
+            int count = 0;
+            for (final State state : states) {
+                count += state.getTransitions().size();
+            }
+            min = new char[count];
+            max = new char[count];
+            dest = new int[count];
+            int t = 0;
+            for (int s = 0; s < states.length; ++s) {
+                accept[s] = states[s].isAccept();
+                first[s] = t;
+                final List<Transition> transitions = states[s].getSortedTransitions(true);
+                for (final Transition transition : transitions) {
+                    min[t] = transition.getMin();
+                    max[t] = transition.getMax();
+                    dest[t] = index.get(transition.getDest());
+                    ++t;
+                }
+            }
+            first[states.length] = t;
+        }
+    }
+
+    private static final int MAX_BUFFER_SIZE = 1024;
+    private static final ConcurrentMap<String, Compiled> compiled = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Xeger> instances = new ConcurrentHashMap<>();
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final Compiled automaton;
     private final Random    random;
 
     /**
@@ -53,14 +114,20 @@ public class Xeger {
     public Xeger(final String regex, final Random random) {
         assert regex != null;
         assert random != null;
-        this.automaton = new RegExp(regex).toAutomaton();
+        this.automaton = compiled.computeIfAbsent(regex, (r) -> new Compiled(new RegExp(r).toAutomaton()));
         this.random    = random;
     }
 
-    private void appendChoice(final StringBuilder builder, final Transition transition) {
-        final char c = (char) XegerUtils.getRandomInt(transition.getMin(), transition.getMax(), random);
-
-        builder.append(c);
+    /**
+     * Returns a shared instance for the passed regular expression, to be used
+     * with {@link #generate(Random)}.
+     *
+     * @param regex
+     * @return
+     * @throws IllegalArgumentException If the regular expression is invalid.
+     */
+    public static Xeger forPattern(final String regex) {
+        return instances.computeIfAbsent(regex, Xeger::new);
     }
 
     /**
@@ -68,38 +135,45 @@ public class Xeger {
      * @return String
      */
     public String generate() {
-        final StringBuilder builder = new StringBuilder();
-
-        generate(builder, automaton.getInitialState());
-
-        return builder.toString();
+        return generate(random);
     }
 
-    private void generate(final StringBuilder builder, final State state) {
-        final List<Transition> transitions = state.getSortedTransitions(true);
-
-        if (transitions.isEmpty()) {
-            assert state.isAccept();
-
-            return;
+    /**
+     * Generates a random String that is guaranteed to match the regular
+     * expression, using the passed randomizer.
+     *
+     * @param random
+     * @return String
+     */
+    public String generate(final Random random) {
+        StringBuilder builder = buffers.get();
+        builder.setLength(0);
+
+        int state = 0;
+        while (true) {
+            final int from = automaton.first[state];
+            final int transitions = automaton.first[state + 1] - from;
+            if (transitions == 0) {
+                break;
+            }
+            final boolean accept = automaton.accept[state];
+            final int nroptions = accept ? transitions : transitions - 1;
+            final int option = XegerUtils.getRandomInt(0, nroptions, random);
+            if (accept && (option == 0)) {    // 0 is considered stop
+                break;
+            }
+
+            // Moving on to next transition
+            final int t = from + option - (accept ? 1 : 0);
+            builder.append((char) XegerUtils.getRandomInt(automaton.min[t], automaton.max[t], random));
+            state = automaton.dest[t];
         }
 
-        final int nroptions = state.isAccept()
-                              ? transitions.size()
-                              : transitions.size() - 1;
-        final int option    = XegerUtils.getRandomInt(0, nroptions, random);
-
-        if (state.isAccept() && (option == 0)) {    // 0 is considered stop
-            return;
+        final String text = builder.toString();
+        if (builder.capacity() > MAX_BUFFER_SIZE) {
+            buffers.remove();
         }
-
-        // Moving on to next transition
-        final Transition transition = transitions.get(option - (state.isAccept()
-                                                                ? 1
-                                                                : 0));
-
-        appendChoice(builder, transition);
-        generate(builder, transition.getDest());
+        return text;
     }
 }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for BatchSizer adjustments.
+ */
+public class BatchSizerTest {
+
+    private static long millis(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    @Test
+    public void testFixedWithoutTarget() {
+        final BatchSizer sizer = new BatchSizer(1000, 10, 50000, 0, 0.8, () -> 1.0);
+        sizer.record(1000, millis(5000));
+        assertFalse(sizer.isAdaptive());
+        assertEquals(1000, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testGrowsTowardsTarget() {
+        final BatchSizer sizer = new BatchSizer(1000, 10, 50000, 100, 0.8, () -> 0.1);
+        sizer.record(1000, millis(80));
+        assertEquals(1250, sizer.getBatchSize());
+        // at most doubles at once
+        sizer.record(1250, millis(1));
+        assertEquals(2500, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testShrinksTowardsTarget() {
+        final BatchSizer sizer = new BatchSizer(1000, 10, 50000, 100, 0.8, () -> 0.1);
+        sizer.record(1000, millis(125));
+        assertEquals(800, sizer.getBatchSize());
+        // at most halves at once
+        sizer.record(800, millis(10000));
+        assertEquals(400, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testIgnoresPartialBatches() {
+        final BatchSizer sizer = new BatchSizer(1000, 10, 50000, 100, 0.8, () -> 0.1);
+        sizer.record(10, millis(90));
+        assertEquals(1000, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testStaysWithinBounds() {
+        final BatchSizer sizer = new BatchSizer(100, 50, 150, 100, 0.8, () -> 0.1);
+        sizer.record(100, millis(1));
+        assertEquals(150, sizer.getBatchSize());
+        sizer.record(150, millis(10000));
+        assertEquals(75, sizer.getBatchSize());
+        sizer.record(75, millis(10000));
+        assertEquals(50, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testBacksOffOnHeapUsage() {
+        final BatchSizer sizer = new BatchSizer(1000, 10, 50000, 100, 0.8, () -> 0.9);
+        sizer.record(1000, millis(1));
+        assertEquals(500, sizer.getBatchSize());
+        sizer.record(10, millis(1));
+        assertEquals(250, sizer.getBatchSize());
+        assertEquals("batch size 250 (ranged from 250 to 1000)", sizer.toString());
+    }
+}
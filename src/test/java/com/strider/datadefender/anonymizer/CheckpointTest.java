@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.DataDefenderException;
+import com.strider.datadefender.requirement.Table;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Checkpoint.
+ */
+public class CheckpointTest {
+
+    private static Object roundTrip(final Object key) throws Exception {
+        final String[] encoded = Checkpoint.encodeKey(key);
+        return Checkpoint.decodeKey(encoded[0], encoded[1]);
+    }
+
+    @Test
+    public void testKeysRoundTrip() throws Exception {
+        final Timestamp ts = Timestamp.valueOf("2020-03-29 02:30:00.123456789");
+        assertEquals(ts, roundTrip(ts));
+        final BigDecimal dec = new BigDecimal("12.500");
+        assertEquals(3, ((BigDecimal) roundTrip(dec)).scale());
+        assertArrayEquals(new byte[] { 0, -1, 7 }, (byte[]) roundTrip(new byte[] { 0, -1, 7 }));
+        assertEquals("a,b|c", roundTrip("a,b|c"));
+        assertEquals(42L, roundTrip(42L));
+        assertNull(roundTrip(null));
+        assertThrows(DataDefenderException.class, () -> Checkpoint.encodeKey(new Object()));
+    }
+
+    @Test
+    public void testRangesAndFingerprints(@TempDir Path dir) throws Exception {
+        final Table table = new Table("ju_table");
+        table.setPrimaryKey("id");
+        final List<String> keys = table.getPrimaryKeyColumnNames();
+        final List<KeyRange> ranges = List.of(
+            new KeyRange(keys, null, new Object[] { 10 }),
+            new KeyRange(keys, new Object[] { 10 }, new Object[] { 20 }),
+            new KeyRange(keys, new Object[] { 20 }, null)
+        );
+        final Path file = dir.resolve("checkpoint.properties");
+        new Checkpoint(file, false).setRanges(table, ranges);
+
+        final Checkpoint resumed = new Checkpoint(file, true);
+        final List<KeyRange> recorded = resumed.getRanges(table);
+        assertEquals(ranges.toString(), recorded.toString());
+        assertEquals(
+            Checkpoint.fingerprint(table, ranges.get(1)),
+            Checkpoint.fingerprint(table, recorded.get(1))
+        );
+        assertNotEquals(
+            Checkpoint.fingerprint(table, ranges.get(1)),
+            Checkpoint.fingerprint(table, new KeyRange(keys, new Object[] { 10 }, new Object[] { 21 }))
+        );
+        assertNull(resumed.getRanges(new Table("ju_other")));
+    }
+
+    @Test
+    public void testConcurrentCommits(@TempDir Path dir) throws Exception {
+        final Table table = new Table("ju_table");
+        table.setPrimaryKey("id");
+        final Path file = dir.resolve("checkpoint.properties");
+        final Checkpoint checkpoint = new Checkpoint(file, false);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int u = 0; u < 8; ++u) {
+                final Checkpoint.Unit unit = checkpoint.getUnit("ju_table." + u, table, null);
+                futures.add(executor.submit(() -> {
+                    for (long key = 1; key <= 50; ++key) {
+                        unit.commit(new Object[] { key });
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final Checkpoint resumed = new Checkpoint(file, true);
+        for (int u = 0; u < 8; ++u) {
+            final Checkpoint.Unit unit = resumed.getUnit("ju_table." + u, table, null);
+            assertArrayEquals(new Object[] { 50L }, unit.getLastCommittedKeys());
+        }
+    }
+}
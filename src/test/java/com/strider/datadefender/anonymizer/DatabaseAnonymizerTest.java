@@ -0,0 +1,344 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.AnonymizerConfig;
+import com.strider.datadefender.DataDefenderException;
+import com.strider.datadefender.DbConfig;
+import com.strider.datadefender.database.IDbFactory;
+import com.strider.datadefender.requirement.Requirement;
+import com.strider.datadefender.requirement.Table;
+import com.strider.datadefender.requirement.file.Loader;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs DatabaseAnonymizer against an in-memory H2 database.
+ */
+public class DatabaseAnonymizerTest {
+
+    private static final String URL = "jdbc:h2:mem:anonymizer-test;DB_CLOSE_DELAY=-1";
+
+    private Connection connection;
+    private Requirement requirement;
+    private DbConfig dbConfig;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ju_users (id INT PRIMARY KEY, fname VARCHAR(20), lname VARCHAR(20))");
+            stmt.execute("CREATE TABLE ju_accounts (user_id INT, account VARCHAR(10), nickname VARCHAR(20), "
+                + "PRIMARY KEY (user_id, account))");
+            for (int i = 1; i <= 25; ++i) {
+                stmt.execute("INSERT INTO ju_users VALUES (" + i + ", 'first" + i + "', 'last" + i + "')");
+                stmt.execute("INSERT INTO ju_accounts VALUES (" + i + ", 'a', 'nick" + i + "')");
+                stmt.execute("INSERT INTO ju_accounts VALUES (" + i + ", 'b', 'nick" + i + "b')");
+            }
+        }
+        dbConfig = new DbConfig();
+        dbConfig.setUrl(URL);
+        requirement = new Loader().load(
+            DatabaseAnonymizerTest.class.getClassLoader().getResource("Requirement-Anonymizer-H2.xml").getPath()
+        );
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private AnonymizerConfig config(String... args) {
+        return CommandLine.populateCommand(new AnonymizerConfig(), args);
+    }
+
+    private void anonymize(AnonymizerConfig config, List<String> tables) throws Exception {
+        try (IDbFactory factory = IDbFactory.get(dbConfig)) {
+            new DatabaseAnonymizer(factory, dbConfig, config, requirement, tables).anonymize();
+        }
+    }
+
+    private List<String> column(String query) throws Exception {
+        final List<String> values = new ArrayList<>();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+
+    private void assertAnonymized() throws Exception {
+        final List<String> fnames = column("SELECT fname FROM ju_users ORDER BY id");
+        final List<String> nicknames = column("SELECT nickname FROM ju_accounts ORDER BY user_id, account");
+        assertEquals(25, fnames.size());
+        for (int i = 1; i <= 25; ++i) {
+            assertEquals(new StringBuilder("first" + i).reverse().toString(), fnames.get(i - 1));
+            assertEquals(new StringBuilder("nick" + i).reverse().toString(), nicknames.get((i - 1) * 2));
+            assertEquals(new StringBuilder("nick" + i + "b").reverse().toString(), nicknames.get((i - 1) * 2 + 1));
+        }
+        assertEquals("01tsal", column("SELECT lname FROM ju_users WHERE id = 10").get(0));
+    }
+
+    @Test
+    public void testAnonymize() throws Exception {
+        anonymize(config("--batch-size", "7"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithThreads() throws Exception {
+        anonymize(config("--batch-size", "7", "--threads", "2"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithPartitions() throws Exception {
+        anonymize(config("--batch-size", "4", "--threads", "3", "--partitions", "4"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithPartitionsSerially() throws Exception {
+        anonymize(config("--partitions", "40"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithTransformThreads() throws Exception {
+        anonymize(config("--batch-size", "3", "--transform-threads", "4"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithTransformThreadsAndPartitions() throws Exception {
+        anonymize(
+            config("--batch-size", "5", "--threads", "2", "--partitions", "3", "--transform-threads", "2"),
+            List.of("ju_users", "ju_accounts")
+        );
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithStagingTable() throws Exception {
+        anonymize(config("--batch-size", "6", "--write-strategy", "staging"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+        assertEquals(
+            List.of("0"),
+            column("SELECT COUNT(*) FROM information_schema.tables WHERE UPPER(table_name) LIKE 'DD_STG_%'")
+        );
+    }
+
+    @Test
+    public void testAnonymizeWithStagingTableAndTransformThreads() throws Exception {
+        anonymize(
+            config("--batch-size", "6", "--write-strategy", "STAGING", "--transform-threads", "2", "--threads", "2"),
+            List.of("ju_users", "ju_accounts")
+        );
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithAdaptiveBatchSize() throws Exception {
+        anonymize(
+            config("--batch-size", "2", "--min-batch-size", "1", "--batch-target-millis", "100", "--transform-threads", "2"),
+            List.of("ju_users", "ju_accounts")
+        );
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithPages() throws Exception {
+        anonymize(config("--batch-size", "3", "--page-size", "4"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithPagesFillingTheTable() throws Exception {
+        // 25 and 50 rows, so the last page read is empty
+        anonymize(config("--page-size", "5"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testAnonymizeWithPagesAndTransformThreads() throws Exception {
+        anonymize(
+            config("--batch-size", "2", "--page-size", "7", "--transform-threads", "2", "--threads", "2", "--partitions", "2"),
+            List.of("ju_users", "ju_accounts")
+        );
+        assertAnonymized();
+    }
+
+    private void writeCheckpoint(Path file, String fingerprint, int lastId) throws Exception {
+        final Properties props = new Properties();
+        props.setProperty("ju_users.plan", fingerprint);
+        props.setProperty("ju_users.status", "partial");
+        props.setProperty("ju_users.keys", "1");
+        props.setProperty("ju_users.key.0", String.valueOf(lastId));
+        props.setProperty("ju_users.key.0.type", Integer.class.getName());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            props.store(out, null);
+        }
+    }
+
+    @Test
+    public void testResumeSkipsCompletedTables(@TempDir Path dir) throws Exception {
+        final String file = dir.resolve("checkpoint.properties").toString();
+        anonymize(config("--batch-size", "4", "--checkpoint-file", file), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+        anonymize(config("--checkpoint-file", file, "--resume"), List.of("ju_users", "ju_accounts"));
+        assertAnonymized();
+    }
+
+    @Test
+    public void testResumeAfterLastCommittedKey(@TempDir Path dir) throws Exception {
+        final Path file = dir.resolve("checkpoint.properties");
+        final Table table = requirement.getFilteredTables(List.of("ju_users")).get(0);
+        writeCheckpoint(file, Checkpoint.fingerprint(table), 10);
+
+        anonymize(
+            config("--batch-size", "3", "--transform-threads", "3", "--checkpoint-file", file.toString(), "--resume"),
+            List.of("ju_users")
+        );
+        final List<String> fnames = column("SELECT fname FROM ju_users ORDER BY id");
+        for (int i = 1; i <= 25; ++i) {
+            final String fname = "first" + i;
+            assertEquals(i <= 10 ? fname : new StringBuilder(fname).reverse().toString(), fnames.get(i - 1));
+        }
+
+        final Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        assertEquals("complete", props.getProperty("ju_users.status"));
+    }
+
+    @Test
+    public void testResumeWithPages(@TempDir Path dir) throws Exception {
+        final Path file = dir.resolve("checkpoint.properties");
+        final Table table = requirement.getFilteredTables(List.of("ju_users")).get(0);
+        writeCheckpoint(file, Checkpoint.fingerprint(table), 20);
+
+        anonymize(config("--page-size", "2", "--checkpoint-file", file.toString(), "--resume"), List.of("ju_users"));
+        final List<String> fnames = column("SELECT fname FROM ju_users ORDER BY id");
+        for (int i = 1; i <= 25; ++i) {
+            final String fname = "first" + i;
+            assertEquals(i <= 20 ? fname : new StringBuilder(fname).reverse().toString(), fnames.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testResumeReusesRecordedRanges(@TempDir Path dir) throws Exception {
+        final Path file = dir.resolve("checkpoint.properties");
+        anonymize(config("--partitions", "3", "--checkpoint-file", file.toString()), List.of("ju_users"));
+
+        // restores the table and adds rows that would move split points if
+        // the table was partitioned again
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("UPDATE ju_users SET fname = 'first' || id");
+            for (int i = 26; i <= 100; ++i) {
+                stmt.execute("INSERT INTO ju_users VALUES (" + i + ", 'first" + i + "', 'last" + i + "')");
+            }
+        }
+        final Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        assertEquals("3", props.getProperty("ju_users.ranges"));
+        final String unit = "ju_users (range 2/3)";
+        final int lower = Integer.parseInt(props.getProperty("ju_users.ranges.split.1.key.0"));
+        final int upper = Integer.parseInt(props.getProperty("ju_users.ranges.split.2.key.0"));
+        props.setProperty(unit + ".status", "partial");
+        props.setProperty(unit + ".keys", "1");
+        props.setProperty(unit + ".key.0", String.valueOf(lower + 1));
+        props.setProperty(unit + ".key.0.type", Integer.class.getName());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            props.store(out, null);
+        }
+
+        anonymize(config("--partitions", "3", "--checkpoint-file", file.toString(), "--resume"), List.of("ju_users"));
+        final List<String> fnames = column("SELECT fname FROM ju_users ORDER BY id");
+        for (int i = 1; i <= 100; ++i) {
+            final String fname = "first" + i;
+            final boolean resumed = i > lower + 1 && i < upper;
+            assertEquals(resumed ? new StringBuilder(fname).reverse().toString() : fname, fnames.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testResumeWithChangedPlan(@TempDir Path dir) throws Exception {
+        final Path file = dir.resolve("checkpoint.properties");
+        writeCheckpoint(file, "changed", 10);
+        assertThrows(
+            DataDefenderException.class,
+            () -> anonymize(config("--checkpoint-file", file.toString(), "--resume"), List.of("ju_users"))
+        );
+        assertEquals("first11", column("SELECT fname FROM ju_users WHERE id = 11").get(0));
+    }
+
+    @Test
+    public void testFailingTableDoesNotStopOthers() throws Exception {
+        final DataDefenderException ex = assertThrows(
+            DataDefenderException.class,
+            () -> anonymize(config("--threads", "3"), null)
+        );
+        assertTrue(ex.getMessage().contains("ju_missing"));
+        assertAnonymized();
+    }
+
+    private List<String> anonymizeSeeded(String... args) throws Exception {
+        tearDown();
+        setUp();
+        requirement = new Loader().load(
+            DatabaseAnonymizerTest.class.getClassLoader().getResource("Requirement-Anonymizer-H2-Random.xml").getPath()
+        );
+        anonymize(config(args), List.of("ju_users", "ju_accounts"));
+        final List<String> values = column("SELECT fname FROM ju_users ORDER BY id");
+        values.addAll(column("SELECT nickname FROM ju_accounts ORDER BY user_id, account"));
+        return values;
+    }
+
+    @Test
+    public void testSeedReproducesRunsWithAnyParallelism() throws Exception {
+        final List<String> serial = anonymizeSeeded("--seed", "42", "--batch-size", "7");
+        assertFalse(serial.contains("first1"));
+        assertEquals(serial, anonymizeSeeded("--seed", "42", "--threads", "3", "--partitions", "4"));
+        assertEquals(serial, anonymizeSeeded("--seed", "42", "--batch-size", "3", "--transform-threads", "2"));
+        assertNotEquals(serial, anonymizeSeeded("--seed", "43"));
+    }
+}
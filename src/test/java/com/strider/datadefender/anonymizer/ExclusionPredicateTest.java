@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.requirement.Column;
+import com.strider.datadefender.requirement.Exclude;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for ExclusionPredicate rules.
+ */
+public class ExclusionPredicateTest {
+
+    private ExclusionPredicate compile(Exclude... exclusions) throws SQLException {
+        final Column column = mock(Column.class);
+        when(column.getName()).thenReturn("name");
+        when(column.getExclusions()).thenReturn(List.of(exclusions));
+        final ResultSet rs = mock(ResultSet.class);
+        when(rs.findColumn("name")).thenReturn(1);
+        when(rs.findColumn("other")).thenReturn(2);
+        return new ExclusionPredicate(column, rs);
+    }
+
+    private boolean isExcluded(ExclusionPredicate predicate, String name, String other) throws SQLException {
+        final ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(name);
+        when(rs.getString(2)).thenReturn(other);
+        return predicate.isExcluded(rs);
+    }
+
+    @Test
+    public void testExclusions() throws SQLException {
+        final Exclude eq = new Exclude();
+        eq.setEquals("a");
+        final Exclude lk = new Exclude();
+        lk.setLike("B%");
+        final Exclude in = new Exclude();
+        in.setExcludeIn("c,d");
+        final Exclude nl = new Exclude();
+        nl.setExcludeNull(true);
+        final ExclusionPredicate predicate = compile(eq, lk, in, nl);
+        assertTrue(isExcluded(predicate, "a", null));
+        assertTrue(isExcluded(predicate, "bob", null));
+        assertTrue(isExcluded(predicate, "d", null));
+        assertTrue(isExcluded(predicate, null, null));
+        assertFalse(isExcluded(predicate, "e", null));
+    }
+
+    @Test
+    public void testInclusions() throws SQLException {
+        final Exclude neq = new Exclude();
+        neq.setNotEquals("a");
+        final Exclude nlk = new Exclude();
+        nlk.setNotLike("b_");
+        final Exclude nin = new Exclude();
+        nin.setExcludeNotIn("c|d");
+        nin.setInSeparator("|");
+        final ExclusionPredicate predicate = compile(neq, nlk, nin);
+        assertFalse(isExcluded(predicate, "a", null));
+        assertFalse(isExcluded(predicate, "bx", null));
+        assertFalse(isExcluded(predicate, "d", null));
+        assertTrue(isExcluded(predicate, "bxx", null));
+        assertTrue(isExcluded(predicate, null, null));
+    }
+
+    @Test
+    public void testOtherColumn() throws SQLException {
+        final Exclude other = new Exclude();
+        other.setName("other");
+        other.setEquals("skip");
+        final ExclusionPredicate predicate = compile(other);
+        assertTrue(isExcluded(predicate, "a", "skip"));
+        assertFalse(isExcluded(predicate, "skip", "keep"));
+    }
+
+    @Test
+    public void testNoExclusions() throws SQLException {
+        assertFalse(isExcluded(compile(), null, null));
+    }
+}
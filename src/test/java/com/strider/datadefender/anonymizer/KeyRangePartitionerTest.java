@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.DbConfig;
+import com.strider.datadefender.database.IDbFactory;
+import com.strider.datadefender.requirement.Table;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that KeyRangePartitioner's ranges cover each row exactly once.
+ */
+public class KeyRangePartitionerTest {
+
+    private static final String URL = "jdbc:h2:mem:partitioner-test;DB_CLOSE_DELAY=-1";
+
+    private Connection connection;
+    private IDbFactory factory;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ju_numbered (id BIGINT PRIMARY KEY)");
+            stmt.execute("CREATE TABLE ju_coded (code VARCHAR(5), n INT, PRIMARY KEY (code, n))");
+            for (int i = 0; i < 30; ++i) {
+                stmt.execute("INSERT INTO ju_numbered VALUES (" + (i * i - 100) + ")");
+                stmt.execute("INSERT INTO ju_coded VALUES ('c" + (i % 4) + "', " + i + ")");
+            }
+        }
+        final DbConfig config = new DbConfig();
+        config.setUrl(URL);
+        factory = IDbFactory.get(config);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        factory.close();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private int count(final Table table, final KeyRange range) throws Exception {
+        final StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM " + table.getName());
+        final List<Object> params = new ArrayList<>();
+        final StringBuilder condition = new StringBuilder();
+        if (range.appendCondition(condition, params)) {
+            sql.append(" WHERE ").append(condition);
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); ++i) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private void assertCovered(final Table table, final List<KeyRange> ranges) throws Exception {
+        int total = 0;
+        for (final KeyRange range : ranges) {
+            final int rows = count(table, range);
+            assertTrue(rows > 0, "Empty range " + range);
+            total += rows;
+        }
+        assertEquals(30, total);
+    }
+
+    @Test
+    public void testNumericKey() throws Exception {
+        final Table table = new Table("ju_numbered");
+        table.setPrimaryKey("id");
+        final List<KeyRange> ranges = new KeyRangePartitioner(factory).partition(table, 3);
+        assertEquals(3, ranges.size());
+        assertCovered(table, ranges);
+    }
+
+    @Test
+    public void testCompositeStringKey() throws Exception {
+        final Table table = new Table("ju_coded");
+        table.setPrimaryKeys(List.of("code", "n"));
+        final List<KeyRange> ranges = new KeyRangePartitioner(factory).partition(table, 4);
+        assertEquals(4, ranges.size());
+        assertCovered(table, ranges);
+    }
+
+    @Test
+    public void testCompositeKeyRowCounts() throws Exception {
+        final Table table = new Table("ju_coded");
+        table.setPrimaryKeys(List.of("code", "n"));
+        final List<KeyRange> ranges = new KeyRangePartitioner(factory).partition(table, 4);
+        final List<Integer> counts = new ArrayList<>();
+        for (final KeyRange range : ranges) {
+            counts.add(count(table, range));
+        }
+        assertEquals(List.of(8, 8, 7, 7), counts);
+    }
+
+    @Test
+    public void testSinglePartition() throws Exception {
+        final Table table = new Table("ju_numbered");
+        table.setPrimaryKey("id");
+        final List<KeyRange> ranges = new KeyRangePartitioner(factory).partition(table, 1);
+        assertEquals(1, ranges.size());
+        assertNull(ranges.get(0).getLower());
+        assertNull(ranges.get(0).getUpper());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for KeyRange conditions.
+ */
+public class KeyRangeTest {
+
+    @Test
+    public void testSingleKeyCondition() {
+        final StringBuilder sql = new StringBuilder();
+        final List<Object> params = new ArrayList<>();
+        final KeyRange range = new KeyRange(List.of("id"), new Object[] { 10L }, new Object[] { 20L });
+        assertTrue(range.appendCondition(sql, params));
+        assertEquals("id >= ? AND id < ?", sql.toString());
+        assertEquals(List.of(10L, 20L), params);
+    }
+
+    @Test
+    public void testCompositeKeyCondition() {
+        final StringBuilder sql = new StringBuilder();
+        final List<Object> params = new ArrayList<>();
+        final KeyRange range = new KeyRange(List.of("a", "b", "c"), new Object[] { 1, "x", 2 }, null);
+        assertTrue(range.appendCondition(sql, params));
+        assertEquals("(a > ? OR (a = ? AND (b > ? OR (b = ? AND c >= ?))))", sql.toString());
+        assertEquals(List.of(1, 1, "x", "x", 2), params);
+    }
+
+    @Test
+    public void testLeadingKeyOnly() {
+        final StringBuilder sql = new StringBuilder();
+        final List<Object> params = new ArrayList<>();
+        final KeyRange range = new KeyRange(List.of("a", "b"), null, new Object[] { 5 });
+        assertTrue(range.appendCondition(sql, params));
+        assertEquals("a < ?", sql.toString());
+        assertEquals(List.of(5), params);
+    }
+
+    @Test
+    public void testUnbounded() {
+        final StringBuilder sql = new StringBuilder();
+        assertFalse(new KeyRange(List.of("a"), null, null).appendCondition(sql, new ArrayList<>()));
+        assertEquals("", sql.toString());
+    }
+}
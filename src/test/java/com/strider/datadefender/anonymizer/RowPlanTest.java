@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer;
+
+import com.strider.datadefender.database.metadata.MetaData;
+import com.strider.datadefender.requirement.Column;
+import com.strider.datadefender.requirement.Exclude;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for RowPlan, reading from and writing to an in-memory H2 table.
+ */
+public class RowPlanTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:rowplan-test;DB_CLOSE_DELAY=-1");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ju_people (id INT PRIMARY KEY, name VARCHAR(5), age INT)");
+            stmt.execute("INSERT INTO ju_people VALUES (1, 'ann', 30)");
+            stmt.execute("INSERT INTO ju_people VALUES (2, 'bob', 40)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private Column column(String name, Class<?> type, Object result, Exclude... exclusions) throws Exception {
+        final Column column = mock(Column.class);
+        when(column.getName()).thenReturn(name);
+        doReturn(type).when(column).getType();
+        when(column.getExclusions()).thenReturn(exclusions.length == 0 ? null : List.of(exclusions));
+        when(column.invokeFunctionChainWithValue(any())).thenReturn(result);
+        return column;
+    }
+
+    private void anonymize(List<Column> columns) throws Exception {
+        try (Statement select = connection.createStatement();
+            ResultSet rs = select.executeQuery("SELECT id, name, age FROM ju_people ORDER BY id");
+            PreparedStatement update = connection.prepareStatement("UPDATE ju_people SET name = ?, age = ? WHERE id = ?")) {
+            final RowPlan plan = new RowPlan("ju_people", columns, List.of("id"), rs, new MetaData(null, null).getMetaDataFor(rs));
+            assertEquals(2, plan.getColumnCount());
+            assertEquals(1, plan.getKeyCount());
+            final RowPlan.Rows rows = plan.newRows();
+            while (plan.readRows(rs, rows, 10) > 0) {
+                plan.transformRows(rows);
+                plan.writeRows(rows, update);
+            }
+            update.executeBatch();
+        }
+    }
+
+    private String row(int id) throws Exception {
+        try (Statement stmt = connection.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT name, age FROM ju_people WHERE id = " + id)) {
+            rs.next();
+            return rs.getString(1) + "," + rs.getString(2);
+        }
+    }
+
+    @Test
+    public void testTruncatesAndBindsTypedValues() throws Exception {
+        anonymize(List.of(column("name", String.class, "abcdefgh"), column("age", Integer.class, 7)));
+        assertEquals("abcde,7", row(1));
+        assertEquals("abcde,7", row(2));
+    }
+
+    @Test
+    public void testExcludedColumns() throws Exception {
+        final Exclude bob = new Exclude();
+        bob.setEquals("bob");
+        final Exclude ann = new Exclude();
+        ann.setEquals("ann");
+        anonymize(List.of(
+            column("name", String.class, "first", bob),
+            column("name", String.class, "second", ann),
+            column("age", Long.class, null)
+        ));
+        assertEquals("first,null", row(1));
+        assertEquals("secon,null", row(2));
+    }
+
+    @Test
+    public void testAllCandidatesExcluded() throws Exception {
+        final Exclude all = new Exclude();
+        all.setLike("%");
+        anonymize(List.of(column("name", String.class, "x", all), column("age", String.class, "50")));
+        assertEquals("ann,50", row(1));
+        assertEquals("bob,50", row(2));
+    }
+
+    @Test
+    public void testBatchableColumnsAreInvokedOncePerBatch() throws Exception {
+        final Column name = column("name", String.class, null);
+        when(name.isBatchable()).thenReturn(true);
+        when(name.invokeFunctionChainWithValues(any())).thenReturn(new Object[] { "a-long-name", "b" });
+        anonymize(List.of(name, column("age", Integer.class, 9)));
+        verify(name).invokeFunctionChainWithValues(new Object[] { "ann", "bob" });
+        verify(name, never()).invokeFunctionChainWithValue(any());
+        assertEquals("a-lon,9", row(1));
+        assertEquals("b,9", row(2));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer.functions;
+
+import com.strider.datadefender.requirement.registry.RandomSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DateRange.
+ */
+public class DateRangeTest {
+
+    @Test
+    public void testOfDatesIsCached() {
+        assertSame(
+            DateRange.ofDates("2001-01-01", "2002-01-01", "yyyy-MM-dd"),
+            DateRange.ofDates("2001-01-01", "2002-01-01", "yyyy-MM-dd")
+        );
+        assertNotSame(
+            DateRange.ofDates("2001-01-01", "2002-01-01", "yyyy-MM-dd"),
+            DateRange.ofDateTimes("2001-01-01 00:00:00", "2002-01-01 00:00:00", "yyyy-MM-dd HH:mm:ss")
+        );
+    }
+
+    @Test
+    public void testRandomDate() {
+        final RandomSource random = new RandomSource(3);
+        final DateRange range = DateRange.ofDates("01/02/2010", "01/03/2010", "dd/MM/yyyy");
+        final LocalDate start = LocalDate.of(2010, 2, 1);
+        final LocalDate end = LocalDate.of(2010, 3, 1);
+        for (int i = 0; i < 100; ++i) {
+            final LocalDate date = range.randomDate(random);
+            assertFalse(date.isBefore(start));
+            assertTrue(date.isBefore(end));
+        }
+        assertEquals(start, DateRange.ofDates("2010-02-01", "2010-02-01", "yyyy-MM-dd").randomDate(random));
+    }
+
+    @Test
+    public void testRandomDateTime() {
+        final RandomSource random = new RandomSource(3);
+        final DateRange range = DateRange.ofDateTimes("2010-02-01 10:00", "2010-02-01 11:00", "yyyy-MM-dd HH:mm");
+        final LocalDateTime start = LocalDateTime.of(2010, 2, 1, 10, 0);
+        final LocalDateTime end = LocalDateTime.of(2010, 2, 1, 11, 0);
+        for (int i = 0; i < 100; ++i) {
+            final LocalDateTime dateTime = range.randomDateTime(random);
+            assertFalse(dateTime.isBefore(start));
+            assertTrue(dateTime.isBefore(end));
+            assertEquals(0, dateTime.getNano());
+        }
+        assertEquals("2010-02-01 10:00", start.format(range.getFormatter()));
+    }
+}
@@ -35,4 +35,16 @@ public class LipsumTest {
         System.out.println("Testing for 3 paragraphs generated by text with 3 paragraphs");
         assertTrue(paras.matches("^[^\r]+\r\n\r\n[^\r]+\r\n\r\n[^\r]+$"));
     }
+
+    @Test
+    public void testSimilarLines() throws Exception {
+        Lipsum test = new Lipsum();
+
+        String paras = test.similar("First line.\r\n\r\nSecond line.  With two sentences.\n");
+        assertTrue(paras.matches("^[^\r\n]+\r\n\r\n[^\r\n]+$"));
+
+        String sentences = test.similar("Wait... what?  Really.");
+        assertTrue(sentences.matches("([^\\.]+\\.){1,3}"));
+        assertEquals("", test.similar("\r\n\r\n").trim());
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.anonymizer.functions;
+
+import com.strider.datadefender.database.IDbFactory;
+import com.strider.datadefender.requirement.registry.ClassAndFunctionRegistry;
+import com.strider.datadefender.requirement.registry.RandomSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for Table.
+ */
+public class TableTest {
+
+    private static final int NAMES = 200;
+
+    private Connection connection;
+    private Table table;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ClassAndFunctionRegistry.singleton().setRandomSource(new RandomSource());
+        connection = DriverManager.getConnection("jdbc:h2:mem:table-test;DB_CLOSE_DELAY=-1");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ju_names (name VARCHAR(50))");
+            for (int i = 0; i < NAMES; ++i) {
+                stmt.execute("INSERT INTO ju_names VALUES ('Name number " + i + ".')");
+            }
+        }
+        final IDbFactory factory = mock(IDbFactory.class);
+        when(factory.getConnection()).thenReturn(connection);
+        when(factory.getVendorName()).thenReturn("h2");
+        table = new Table();
+        table.initialize(factory);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testMappedColumnShuffleIsAPermutation() throws Exception {
+        final Set<String> names = new HashSet<>();
+        final Set<String> shuffled = new HashSet<>();
+        for (int i = 0; i < NAMES; ++i) {
+            final String name = "Name number " + i + ".";
+            final String value = table.mappedColumnShuffle("ju_names", "name", name, true);
+            assertEquals(value, table.mappedColumnShuffle("ju_names", "name", name, true));
+            names.add(name);
+            shuffled.add(value);
+        }
+        assertEquals(names, shuffled);
+
+        final String unmapped = table.mappedColumnShuffle("ju_names", "name", "Not in the table", true);
+        assertTrue(names.contains(unmapped));
+        assertEquals(unmapped, table.mappedColumnShuffle("ju_names", "name", "Not in the table", true));
+    }
+
+    @Test
+    public void testMappedLipsumSimilarColumnShuffleHasItsOwnMapping() throws Exception {
+        final String name = "Name number 1.";
+        final String mapped = table.mappedColumnShuffle("ju_names", "name", name, false);
+        final String similar = table.mappedLipsumSimilarColumnShuffle("ju_names", "name", name, false);
+        assertEquals(similar, table.mappedLipsumSimilarColumnShuffle("ju_names", "name", name, false));
+        assertNotEquals(mapped, similar);
+        assertFalse(similar.startsWith("Name number"));
+
+        final String unmapped = table.mappedLipsumSimilarColumnShuffle("ju_names", "name", "Not in the table", false);
+        assertEquals(unmapped, table.mappedLipsumSimilarColumnShuffle("ju_names", "name", "Not in the table", false));
+    }
+
+    @Test
+    public void testLipsumTargetsDontDependOnTheRow() throws Exception {
+        final RandomSource source = new RandomSource(5);
+        ClassAndFunctionRegistry.singleton().setRandomSource(source);
+        source.startRow("ju_names", "name", 1);
+        final String first = Table.lipsumFor(new RandomSource(3)).similar("One. Two. Three.");
+        source.startRow("ju_names", "name", 2);
+        assertEquals(first, Table.lipsumFor(new RandomSource(3)).similar("One. Two. Three."));
+    }
+}
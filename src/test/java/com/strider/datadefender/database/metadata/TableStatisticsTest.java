@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.database.metadata;
+
+import com.strider.datadefender.DbConfig;
+import com.strider.datadefender.database.sqlbuilder.SqlBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs TableStatistics against an in-memory H2 database.
+ */
+public class TableStatisticsTest {
+
+    private static final String URL = "jdbc:h2:mem:statistics-test;DB_CLOSE_DELAY=-1";
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ju_full (id INT PRIMARY KEY)");
+            stmt.execute("CREATE TABLE ju_empty (id INT PRIMARY KEY)");
+            for (int i = 0; i < 42; ++i) {
+                stmt.execute("INSERT INTO ju_full VALUES (" + i + ")");
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private TableStatistics statistics(String... args) {
+        final DbConfig config = CommandLine.populateCommand(new DbConfig(), args);
+        config.setUrl(URL);
+        return new TableStatistics(config, connection, new SqlBuilder(config));
+    }
+
+    @Test
+    public void testEstimatedRowCount() throws Exception {
+        final TableStatistics test = statistics();
+        assertNotNull(test.getEstimatedRowCount("ju_full"));
+        assertEquals(42L, test.getRowCount("ju_full"));
+        assertEquals(42L, test.getRowCount("PUBLIC.ju_full"));
+        assertNull(test.getEstimatedRowCount("ju_missing"));
+    }
+
+    @Test
+    public void testExactRowCount() throws Exception {
+        final TableStatistics test = statistics("--exact-row-counts");
+        assertEquals(42L, test.getRowCount("ju_full"));
+        assertEquals(0L, test.getRowCount("ju_empty"));
+    }
+
+    @Test
+    public void testIsEmpty() throws Exception {
+        final TableStatistics test = statistics("--schema", "PUBLIC");
+        assertFalse(test.isEmpty("ju_full"));
+        assertTrue(test.isEmpty("ju_empty"));
+    }
+}
@@ -6,6 +6,8 @@
 package com.strider.datadefender.database.sqlbuilder;
 
 import com.strider.datadefender.DbConfig;
+import com.strider.datadefender.DbConfig.Vendor;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -54,4 +56,56 @@ public class SqlBuilderTest {
         assertEquals("tablas", test.prefixSchema("tablas"));
         assertEquals("tablas", test.prefixSchema("tablas"));
     }
+
+    @Test
+    public void testBuildCreateStagingTable() {
+        when(mockConfig.getVendor()).thenReturn(Vendor.POSTGRESQL);
+        SqlBuilder test = new SqlBuilder(mockConfig);
+        assertEquals(
+            "CREATE TEMPORARY TABLE stg AS SELECT a, k FROM tablas WHERE 1 = 0",
+            test.buildCreateStagingTable("stg", "tablas", List.of("a", "k"))
+        );
+        assertEquals("DROP TABLE stg", test.buildReleaseStagingTable("stg"));
+    }
+
+    @Test
+    public void testBuildStagedUpdate() {
+        when(mockConfig.getVendor()).thenReturn(Vendor.POSTGRESQL);
+        SqlBuilder test = new SqlBuilder(mockConfig);
+        assertEquals(
+            "UPDATE tablas AS d SET a = s.a, b = s.b FROM stg s WHERE d.k = s.k",
+            test.buildStagedUpdate("tablas", "stg", List.of("k"), List.of("a", "b"))
+        );
+        when(mockConfig.getVendor()).thenReturn(Vendor.MYSQL);
+        assertEquals(
+            "UPDATE tablas d JOIN stg s ON d.k = s.k AND d.j = s.j SET d.a = s.a",
+            test.buildStagedUpdate("tablas", "stg", List.of("k", "j"), List.of("a"))
+        );
+        when(mockConfig.getVendor()).thenReturn(Vendor.H2);
+        assertEquals(
+            "MERGE INTO tablas d USING stg s ON (d.k = s.k) WHEN MATCHED THEN UPDATE SET d.a = s.a",
+            test.buildStagedUpdate("tablas", "stg", List.of("k"), List.of("a"))
+        );
+    }
+
+    @Test
+    public void testOracleStagingTableIsKept() {
+        OracleSqlBuilder test = new OracleSqlBuilder(mockConfig);
+        assertEquals(
+            "BEGIN EXECUTE IMMEDIATE 'CREATE GLOBAL TEMPORARY TABLE stg ON COMMIT PRESERVE ROWS AS SELECT a, k "
+            + "FROM tablas WHERE 1 = 0'; EXCEPTION WHEN OTHERS THEN IF SQLCODE != -955 THEN RAISE; END IF; END;",
+            test.buildCreateStagingTable("stg", "tablas", List.of("a", "k"))
+        );
+        assertEquals("TRUNCATE TABLE stg", test.buildReleaseStagingTable("stg"));
+    }
+
+    @Test
+    public void testMsSqlStagedUpdate() {
+        MsSqlBuilder test = new MsSqlBuilder(mockConfig);
+        assertEquals("#stg", test.getStagingTableName("stg"));
+        assertEquals(
+            "UPDATE d SET d.a = s.a FROM tablas d JOIN #stg s ON d.k = s.k",
+            test.buildStagedUpdate("tablas", "#stg", List.of("k"), List.of("a"))
+        );
+    }
 }
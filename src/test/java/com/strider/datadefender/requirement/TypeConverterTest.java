@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for TypeConverter conversions.
+ */
+public class TypeConverterTest {
+
+    @Test
+    public void testIdentityAndString() throws Exception {
+        final StringBuilder sb = new StringBuilder("abc");
+        assertSame(sb, TypeConverter.convert(sb, CharSequence.class));
+        assertEquals("abc", TypeConverter.convert(sb, String.class));
+        assertEquals("12", TypeConverter.convert(12, String.class));
+    }
+
+    @Test
+    public void testPrimitivesFromString() throws Exception {
+        assertEquals(12, TypeConverter.convert("12", Integer.class));
+        assertEquals(12, TypeConverter.convert("12", int.class));
+        assertEquals(1.5d, TypeConverter.convert("1.5", double.class));
+        // resolved converters are reused for later values
+        assertEquals(13, TypeConverter.convert("13", Integer.class));
+    }
+
+    @Test
+    public void testConstructors() throws Exception {
+        assertEquals(new BigDecimal("1.25"), TypeConverter.convert("1.25", BigDecimal.class));
+        assertEquals(new BigDecimal(7), TypeConverter.convert(7, BigDecimal.class));
+        assertEquals(new StringBuilder("x").toString(), TypeConverter.convert("x", StringBuilder.class).toString());
+    }
+
+    @Test
+    public void testUnconvertible() throws Exception {
+        assertFalse(TypeConverter.isConvertible(Integer.class, UUID.class));
+        assertThrows(IllegalArgumentException.class, () -> TypeConverter.convert(5, UUID.class));
+        assertTrue(TypeConverter.isConvertible(Integer.class, String.class));
+        assertTrue(TypeConverter.isConvertible(String.class, BigDecimal.class));
+    }
+}
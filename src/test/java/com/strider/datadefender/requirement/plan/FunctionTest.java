@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.plan;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for resolving and invoking Functions.
+ */
+public class FunctionTest {
+
+    /**
+     * Functions with batch counterparts, counting calls to each.
+     */
+    public static class Batched {
+        static int calls;
+        static int batchCalls;
+
+        public static String upper(String value) {
+            ++calls;
+            return value.toUpperCase();
+        }
+
+        public static String[] upperBatch(String[] values) {
+            ++batchCalls;
+            final String[] results = new String[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                results[i] = values[i].toUpperCase();
+            }
+            return results;
+        }
+
+        public static String repeat(String value, int times) {
+            ++calls;
+            return value.repeat(times);
+        }
+
+        public static String[] repeatBatch(int count, String value, int times) {
+            ++batchCalls;
+            final String[] results = new String[count];
+            for (int i = 0; i < count; ++i) {
+                results[i] = value.repeat(times) + i;
+            }
+            return results;
+        }
+    }
+
+    private static Function function(String name, Class<?> returnType, Argument... arguments) throws Exception {
+        for (final Argument arg : arguments) {
+            arg.afterUnmarshal(null, null);
+        }
+        final Function fn = new Function(name, false);
+        fn.setArguments(List.of(arguments));
+        fn.initialize(returnType);
+        return fn;
+    }
+
+    @Test
+    public void testStaticFunction() throws Exception {
+        final Function fn = function(
+            "org.apache.commons.lang3.StringUtils#leftPad",
+            String.class,
+            new Argument("str", String.class, true),
+            new Argument("size", Integer.class, "5"),
+            new Argument("padStr", String.class, "*")
+        );
+        assertEquals("***ab", fn.invoke("ab"));
+        assertEquals("**abc", fn.invoke("abc"));
+    }
+
+    @Test
+    public void testInstanceMethodOnRunningValue() throws Exception {
+        final Function fn = function("java.lang.String#trim", String.class);
+        assertEquals("value", fn.invoke("  value "));
+    }
+
+    @Test
+    public void testPrimitiveParametersAndReturn() throws Exception {
+        final Function fn = function(
+            "java.lang.Math#max",
+            Integer.class,
+            new Argument("a", Integer.class, true),
+            new Argument("b", Integer.class, "10")
+        );
+        assertEquals(12, fn.invoke(12));
+        assertEquals(10, fn.invoke(3));
+    }
+
+    @Test
+    public void testExceptionsAreWrapped() throws Exception {
+        final Function fn = function(
+            "java.lang.Integer#parseInt",
+            Integer.class,
+            new Argument("s", String.class, true)
+        );
+        assertEquals(42, fn.invoke("42"));
+        final InvocationTargetException e = assertThrows(InvocationTargetException.class, () -> fn.invoke("x"));
+        assertTrue(e.getCause() instanceof NumberFormatException);
+    }
+
+    @Test
+    public void testAdaptationExceptionsAreNotWrapped() throws Exception {
+        final Function fn = function(
+            "java.lang.Math#max",
+            Integer.class,
+            new Argument("a", Integer.class, true),
+            new Argument("b", Integer.class, "10")
+        );
+        // unboxing null for an int parameter fails before Math.max is called
+        assertThrows(NullPointerException.class, () -> fn.invoke(null));
+    }
+
+    @Test
+    public void testBatchCounterpartForRunningValue() throws Exception {
+        final Function fn = function(
+            Batched.class.getName() + "#upper",
+            String.class,
+            new Argument("value", String.class, true)
+        );
+        Batched.calls = Batched.batchCalls = 0;
+        assertTrue(fn.isBatchable());
+        assertArrayEquals(new Object[] { "A", "BC", "D" }, fn.invokeBatch(new Object[] { "a", "bc", "d" }));
+        assertEquals(0, Batched.calls);
+        assertEquals(1, Batched.batchCalls);
+    }
+
+    @Test
+    public void testBatchCounterpartWithCount() throws Exception {
+        final Function fn = function(
+            Batched.class.getName() + "#repeat",
+            String.class,
+            new Argument("value", String.class, "ab"),
+            new Argument("times", Integer.class, "2")
+        );
+        Batched.calls = Batched.batchCalls = 0;
+        assertTrue(fn.isBatchable());
+        assertArrayEquals(new Object[] { "abab0", "abab1" }, fn.invokeBatch(new Object[2]));
+        assertEquals(0, Batched.calls);
+        assertEquals(1, Batched.batchCalls);
+    }
+
+    @Test
+    public void testInvokeBatchWithoutCounterpart() throws Exception {
+        final Function fn = function(
+            "org.apache.commons.lang3.StringUtils#leftPad",
+            String.class,
+            new Argument("str", String.class, true),
+            new Argument("size", Integer.class, "3"),
+            new Argument("padStr", String.class, "*")
+        );
+        assertFalse(fn.isBatchable());
+        assertArrayEquals(new Object[] { "**a", "*bc" }, fn.invokeBatch(new Object[] { "a", "bc" }));
+    }
+
+    @Test
+    public void testPlanInvokesBatchesThroughTheChain() throws Exception {
+        final Plan plan = new Plan();
+        plan.setFunctions(List.of(
+            function(Batched.class.getName() + "#upper", String.class, new Argument("value", String.class, true)),
+            function(
+                "org.apache.commons.lang3.StringUtils#leftPad",
+                String.class,
+                new Argument("str", String.class, true),
+                new Argument("size", Integer.class, "3"),
+                new Argument("padStr", String.class, "*")
+            )
+        ));
+        assertFalse(plan.isBatchable());
+        assertArrayEquals(new Object[] { "**A", "*BC" }, plan.invokeBatch(new Object[] { "a", "bc" }));
+
+        plan.setFunctions(List.of(
+            function(Batched.class.getName() + "#upper", String.class, new Argument("value", String.class, true))
+        ));
+        Batched.calls = Batched.batchCalls = 0;
+        assertTrue(plan.isBatchable());
+        assertArrayEquals(new Object[] { "A", "BC" }, plan.invokeBatch(new Object[] { "a", "bc" }));
+        assertEquals(1, Batched.batchCalls);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.plan;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MemoCache.
+ */
+public class MemoCacheTest {
+
+    @Test
+    public void testLoadsOnceAndCountsLookups() throws Exception {
+        final MemoCache cache = new MemoCache(100);
+        final MemoCache.Stats column = new MemoCache.Stats();
+        final int[] loads = { 0 };
+        final MemoCache.Loader loader = (k) -> {
+            ++loads[0];
+            return k + "!";
+        };
+        assertEquals("a!", cache.get("a", loader, column));
+        assertEquals("a!", cache.get("a", loader, column));
+        assertEquals("b!", cache.get("b", loader, null));
+        assertEquals(2, loads[0]);
+        assertEquals(1, column.getHits());
+        assertEquals(1, column.getMisses());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(2, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void testCachesNullKeysAndValues() throws Exception {
+        final MemoCache cache = new MemoCache(10);
+        assertSame(MemoCache.MISSING, cache.getIfPresent(null, null));
+        cache.put(null, "x");
+        cache.put("y", null);
+        assertEquals("x", cache.getIfPresent(null, null));
+        assertNull(cache.getIfPresent("y", null));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final MemoCache cache = new MemoCache(1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(1, cache.size());
+        assertSame(MemoCache.MISSING, cache.getIfPresent("a", null));
+        assertEquals(2, cache.getIfPresent("b", null));
+
+        final MemoCache larger = new MemoCache(1000);
+        for (int i = 0; i < 5000; ++i) {
+            larger.put(i, i);
+        }
+        assertTrue(larger.size() <= 1000 + 16);
+    }
+
+    @Test
+    public void testArraysAreNotCached() {
+        final MemoCache cache = new MemoCache(10);
+        final byte[] key = { 1, 2 };
+        cache.put(key, "x");
+        assertSame(MemoCache.MISSING, cache.getIfPresent(key, null));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.plan;
+
+import com.strider.datadefender.database.IDbFactory;
+import com.strider.datadefender.requirement.Column;
+import com.strider.datadefender.requirement.Requirement;
+import com.strider.datadefender.requirement.registry.ClassAndFunctionRegistry;
+import com.strider.datadefender.requirement.registry.RandomSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Invokes plans using stateful requirement functions from several threads at
+ * once.
+ */
+public class PlanConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2000;
+    private static final int CITIES = 50;
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ClassAndFunctionRegistry.singleton().setRandomSource(new RandomSource());
+        connection = DriverManager.getConnection("jdbc:h2:mem:plan-concurrency-test;DB_CLOSE_DELAY=-1");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ju_cities (name VARCHAR(20))");
+            for (int i = 0; i < CITIES; ++i) {
+                stmt.execute("INSERT INTO ju_cities VALUES ('city" + i + "')");
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private static Argument argument(String name, Class<?> type, String value) throws Exception {
+        final Argument arg = new Argument(name, type, value);
+        arg.afterUnmarshal(null, null);
+        return arg;
+    }
+
+    private static Argument dynamic(String name) throws Exception {
+        final Argument arg = new Argument(name, String.class, true);
+        arg.afterUnmarshal(null, null);
+        return arg;
+    }
+
+    private static Function function(String name, Argument... arguments) {
+        final Function fn = new Function(name, false);
+        fn.setArguments(List.of(arguments));
+        return fn;
+    }
+
+    private static Plan plan(Function... functions) throws Exception {
+        final Plan plan = new Plan();
+        plan.setFunctions(List.of(functions));
+        plan.setDeterministic(false);
+        plan.initialize(String.class);
+        return plan;
+    }
+
+    private void register(Plan... plans) throws Exception {
+        final List<Column> columns = new ArrayList<>();
+        for (final Plan plan : plans) {
+            final Column column = new Column("name");
+            column.setPlan(plan);
+            columns.add(column);
+        }
+        final com.strider.datadefender.requirement.Table table = new com.strider.datadefender.requirement.Table();
+        table.setName("ju_cities");
+        table.setColumns(columns);
+        final Requirement requirement = new Requirement();
+        requirement.setTables(List.of(table));
+
+        final IDbFactory factory = mock(IDbFactory.class);
+        when(factory.getConnection()).thenReturn(connection);
+        when(factory.getVendorName()).thenReturn("h2");
+        ClassAndFunctionRegistry.singleton().registerFunctions(requirement);
+        ClassAndFunctionRegistry.singleton().initialize(factory);
+    }
+
+    @Test
+    public void testInvokeFromManyThreads() throws Exception {
+        final String table = "com.strider.datadefender.anonymizer.functions.Table";
+        final Plan mapped = plan(function(
+            table + "#mappedColumnShuffle",
+            argument("table", String.class, "ju_cities"),
+            argument("column", String.class, "name"),
+            dynamic("value"),
+            argument("excludeEmpty", Boolean.class, "true")
+        ));
+        final Plan random = plan(function(
+            table + "#randomColumnValue",
+            argument("table", String.class, "ju_cities"),
+            argument("column", String.class, "name"),
+            argument("excludeEmpty", Boolean.class, "true")
+        ));
+        final Plan combined = plan(
+            function("org.apache.commons.lang3.StringUtils#upperCase", dynamic("str")),
+            function("org.apache.commons.lang3.StringUtils#lowerCase", dynamic("str"))
+        );
+        final Function concat = new Function("java.lang.String#concat", true);
+        concat.setArguments(List.of(new Argument(String.class), new Argument(String.class)));
+        concat.initialize(String.class);
+        combined.setCombiner(concat);
+        combined.setCombinerGlueObject("-");
+        final Plan sentences = plan(function(
+            "com.strider.datadefender.anonymizer.functions.Lipsum#sentences",
+            argument("min", Integer.class, "1"),
+            argument("max", Integer.class, "3")
+        ));
+        register(mapped, random, combined, sentences);
+
+        final Set<String> cities = new HashSet<>();
+        for (int i = 0; i < CITIES; ++i) {
+            cities.add("city" + i);
+        }
+        final Map<String, String> mappings = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> draws = new ConcurrentHashMap<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; ++t) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; ++i) {
+                    final String city = "city" + (i % CITIES);
+                    final String value = (String) mapped.invoke(city);
+                    assertEquals(value, mappings.computeIfAbsent(city, (k) -> value));
+
+                    final String next = (String) random.invoke(null);
+                    assertTrue(cities.contains(next));
+                    draws.computeIfAbsent(next, (k) -> new AtomicInteger()).incrementAndGet();
+
+                    assertEquals("AB" + i + "-ab" + i, combined.invoke("Ab" + i));
+                    assertTrue(((String) sentences.invoke(null)).endsWith("."));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals(CITIES, mappings.size());
+        assertTrue(cities.containsAll(mappings.values()));
+        // threads share the list's cycles, so all values are used before
+        // repeating any, and each is drawn the same number of times
+        assertEquals(cities, draws.keySet());
+        for (final AtomicInteger count : draws.values()) {
+            assertEquals(THREADS * ITERATIONS / CITIES, count.get());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.plan;
+
+import com.strider.datadefender.functions.Deterministic;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for caching the results of deterministic plans.
+ */
+public class PlanTest {
+
+    public static class Counted {
+        static int calls;
+
+        @Deterministic
+        public static String mask(String value) {
+            ++calls;
+            return "*" + value;
+        }
+
+        public static String suffix(String value) {
+            ++calls;
+            return value + "-";
+        }
+    }
+
+    private static Plan plan(String method, Boolean deterministic) throws Exception {
+        final Argument arg = new Argument("value", String.class, true);
+        arg.afterUnmarshal(null, null);
+        final Function fn = new Function(Counted.class.getName() + "#" + method, false);
+        fn.setArguments(List.of(arg));
+        final Plan plan = new Plan();
+        plan.setFunctions(List.of(fn));
+        plan.setDeterministic(deterministic);
+        plan.setCacheSize(2);
+        plan.initialize(String.class);
+        return plan;
+    }
+
+    @Test
+    public void testDeterministicFunctionsAreCached() throws Exception {
+        final Plan plan = plan("mask", null);
+        assertTrue(plan.isMemoized());
+        Counted.calls = 0;
+        final MemoCache.Stats stats = new MemoCache.Stats();
+        assertEquals("*a", plan.invoke("a", stats));
+        assertEquals("*a", plan.invoke("a", stats));
+        assertArrayEquals(new Object[] { "*a", "*b", "*a" }, plan.invokeBatch(new Object[] { "a", "b", "a" }, stats));
+        assertEquals(2, Counted.calls);
+        assertEquals(3, stats.getHits());
+        assertEquals(2, stats.getMisses());
+    }
+
+    @Test
+    public void testOtherFunctionsAreNotCached() throws Exception {
+        final Plan plan = plan("suffix", null);
+        assertFalse(plan.isMemoized());
+        Counted.calls = 0;
+        plan.invoke("a");
+        plan.invoke("a");
+        assertEquals(2, Counted.calls);
+    }
+
+    @Test
+    public void testDeterministicAttributeOverridesAnnotations() throws Exception {
+        final Plan declared = plan("suffix", true);
+        assertTrue(declared.isMemoized());
+        assertEquals(2, declared.getCache().getMaximumSize());
+        assertFalse(plan("mask", false).isMemoized());
+    }
+}
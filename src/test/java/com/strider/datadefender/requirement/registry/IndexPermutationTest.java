@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for IndexPermutation.
+ */
+public class IndexPermutationTest {
+
+    private static int[] walk(IndexPermutation permutation) {
+        final int[] order = new int[permutation.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = permutation.get(i);
+        }
+        return order;
+    }
+
+    @Test
+    public void testEveryIndexIsUsedOnce() {
+        for (int size : new int[] { 1, 2, 3, 4, 5, 7, 16, 17, 100, 1000, 65537 }) {
+            for (long key = 0; key < 5; ++key) {
+                final BitSet seen = new BitSet(size);
+                for (int index : walk(new IndexPermutation(size, key))) {
+                    assertTrue(index >= 0 && index < size);
+                    assertFalse(seen.get(index), "Repeated " + index + " of " + size);
+                    seen.set(index);
+                }
+                assertEquals(size, seen.cardinality());
+            }
+        }
+    }
+
+    @Test
+    public void testKeysGiveDifferentOrders() {
+        final int[] first = walk(new IndexPermutation(1000, 1));
+        assertArrayEquals(first, walk(new IndexPermutation(1000, 1)));
+        assertFalse(Arrays.equals(first, walk(new IndexPermutation(1000, 2))));
+        int fixed = 0;
+        for (int i = 0; i < first.length; ++i) {
+            fixed += (first[i] == i) ? 1 : 0;
+        }
+        assertTrue(fixed < 50);
+    }
+
+    @Test
+    public void testOutOfRange() {
+        final IndexPermutation permutation = new IndexPermutation(10, 3);
+        assertThrows(IndexOutOfBoundsException.class, () -> permutation.get(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> permutation.get(-1));
+        assertEquals(0, new IndexPermutation(0, 3).size());
+    }
+}
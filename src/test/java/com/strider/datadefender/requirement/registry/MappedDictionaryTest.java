@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MappedDictionary.
+ */
+public class MappedDictionaryTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(String name, String content) throws Exception {
+        final Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testLinesMatchBufferedReader() throws Exception {
+        final Path file = write("words.txt", "one\ntwo\r\nthree\r\rfünf\n\nlast");
+        final MappedDictionary dictionary = MappedDictionary.open(file);
+        assertEquals(List.of("one", "two", "three", "", "fünf", "", "last"), dictionary);
+        assertEquals(Files.readAllLines(file), dictionary);
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(7));
+    }
+
+    @Test
+    public void testEmptyAndTerminatedFiles() throws Exception {
+        assertTrue(MappedDictionary.open(write("empty.txt", "")).isEmpty());
+        assertEquals(List.of("a", "b"), MappedDictionary.open(write("terminated.txt", "a\nb\n")));
+    }
+
+    @Test
+    public void testIndexIsReusedUntilFileChanges() throws Exception {
+        final Path file = write("words.txt", "one\ntwo\n");
+        assertEquals(List.of("one", "two"), MappedDictionary.open(file));
+        final Path index = dir.resolve("words.txt" + MappedDictionary.INDEX_SUFFIX);
+        assertTrue(Files.isRegularFile(index));
+        final FileTime indexed = Files.getLastModifiedTime(index);
+
+        assertEquals(List.of("one", "two"), MappedDictionary.open(file));
+        assertEquals(indexed, Files.getLastModifiedTime(index));
+
+        Files.write(file, "three\nfour\nfive\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertEquals(List.of("three", "four", "five"), MappedDictionary.open(file));
+    }
+
+    @Test
+    public void testShuffledListsExhaustDictionaryBeforeRepeating() throws Exception {
+        final Path file = write("words.txt", "a\nb\nc\nd\ne\n");
+        final ShuffledLists lists = new ShuffledLists();
+        assertTrue(lists.loadFile("words", file) instanceof MappedDictionary);
+        assertTrue(lists.contains("words"));
+        for (int cycle = 0; cycle < 3; ++cycle) {
+            final Set<String> seen = new HashSet<>();
+            for (int i = 0; i < 5; ++i) {
+                assertTrue(seen.add(lists.next("words")));
+            }
+            assertEquals(Set.of("a", "b", "c", "d", "e"), seen);
+        }
+    }
+}
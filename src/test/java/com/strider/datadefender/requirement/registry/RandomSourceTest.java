@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RandomSource.
+ */
+public class RandomSourceTest {
+
+    private static List<Integer> draw(RandomSource source, Object... context) {
+        source.startRow(context);
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            values.add(source.nextInt(1000));
+        }
+        return values;
+    }
+
+    @Test
+    public void testSeededRowsAreReproducible() {
+        final RandomSource source = new RandomSource(7);
+        final List<Integer> first = draw(source, "users", "fname", 1);
+        draw(source, "users", "fname", 2);
+        assertEquals(first, draw(source, "users", "fname", 1));
+        assertEquals(first, draw(new RandomSource(7), "users", "fname", 1));
+        assertNotEquals(first, draw(source, "users", "lname", 1));
+        assertNotEquals(first, draw(new RandomSource(8), "users", "fname", 1));
+    }
+
+    @Test
+    public void testSeededRowsDontCollideLinearly() {
+        final RandomSource source = new RandomSource(7);
+        // keys offset by the difference of the columns' hash codes collided
+        // with a polynomial hash of the context
+        final int offset = 31 * ("fname".hashCode() - "lname".hashCode());
+        assertNotEquals(
+            draw(source, "users", "fname", new Object[] { 1 }),
+            draw(source, "users", "lname", new Object[] { 1 + offset })
+        );
+        assertNotEquals(draw(source, "users", "ab", 1), draw(source, "users", "a", "b", 1));
+    }
+
+    @Test
+    public void testSeededRowsAreTheSameOnEveryThread() throws Exception {
+        final RandomSource source = new RandomSource(7);
+        final List<Integer> first = draw(source, "users", "fname", 1);
+        final List<List<Integer>> other = new ArrayList<>();
+        final Thread thread = new Thread(() -> other.add(draw(source, "users", "fname", 1)));
+        thread.start();
+        thread.join();
+        assertEquals(first, other.get(0));
+    }
+
+    @Test
+    public void testBounds() {
+        for (final RandomSource source : List.of(new RandomSource(), new RandomSource(3))) {
+            for (int i = 0; i < 1000; ++i) {
+                final int n = source.nextInt(5, 10);
+                assertTrue(n >= 5 && n < 10);
+                final long l = source.nextLong(-3, 3);
+                assertTrue(l >= -3 && l < 3);
+                final double d = source.nextDouble();
+                assertTrue(d >= 0 && d < 1);
+                assertTrue(source.asRandom().nextInt(4) < 4);
+            }
+            assertEquals(4, source.nextInt(4, 4));
+            assertEquals(9L, source.nextLong(9, 9));
+        }
+    }
+
+    @Test
+    public void testNamedGenerators() {
+        final Random a = new RandomSource(5).forName("list");
+        final Random b = new RandomSource(5).forName("list");
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(a.nextInt(), b.nextInt());
+        }
+    }
+}
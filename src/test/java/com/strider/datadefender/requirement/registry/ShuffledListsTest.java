@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ShuffledLists.
+ */
+public class ShuffledListsTest {
+
+    private static final int SIZE = 1000;
+
+    @BeforeEach
+    public void setUp() {
+        ClassAndFunctionRegistry.singleton().setRandomSource(new RandomSource());
+    }
+
+    @Test
+    public void testValuesAreUsedOnceAcrossThreads() throws Exception {
+        final List<String> values = new ArrayList<>();
+        for (int i = 0; i < SIZE; ++i) {
+            values.add("v" + i);
+        }
+        final ShuffledLists lists = new ShuffledLists();
+        lists.load("values", () -> values);
+
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int cycle = 0; cycle < 3; ++cycle) {
+                final Set<String> seen = ConcurrentHashMap.newKeySet();
+                final List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < threads; ++t) {
+                    results.add(executor.submit(() -> {
+                        boolean unique = true;
+                        for (int i = 0; i < SIZE / threads; ++i) {
+                            unique &= seen.add(lists.next("values"));
+                        }
+                        return unique;
+                    }));
+                }
+                for (final Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+                assertEquals(new HashSet<>(values), seen);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
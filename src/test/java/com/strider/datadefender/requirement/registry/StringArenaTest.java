@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.requirement.registry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for StringArena.
+ */
+public class StringArenaTest {
+
+    private static List<String> values(int count) {
+        final List<String> values = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            values.add("välue " + i);
+        }
+        values.add(null);
+        values.add("");
+        values.add(StringUtils.repeat('x', 5 << 20));
+        values.add("last");
+        return values;
+    }
+
+    @Test
+    public void testValuesAreKept() throws Exception {
+        final List<String> values = values(100000);
+        final StringArena.Budget budget = new StringArena.Budget(0);
+        final StringArena arena = StringArena.of(values, budget);
+        assertEquals(values, arena);
+        assertNull(arena.get(100000));
+        assertThrows(IndexOutOfBoundsException.class, () -> arena.get(values.size()));
+        assertTrue(budget.getUsed() > 0);
+        assertEquals(0, StringArena.of(List.of(), budget).size());
+    }
+
+    @Test
+    public void testValuesAreSpilledOverBudget() throws Exception {
+        final List<String> values = values(100000);
+        final StringArena.Budget budget = new StringArena.Budget(64 * 1024);
+        final StringArena arena = StringArena.of(values, budget);
+        assertTrue(budget.getUsed() <= 64 * 1024);
+        assertEquals(values, arena);
+
+        final StringArena spilled = StringArena.of(Arrays.asList("a", null, "c"), budget);
+        assertEquals(Arrays.asList("a", null, "c"), spilled);
+    }
+
+    @Test
+    public void testShuffledListsKeepArenas() throws Exception {
+        final ShuffledLists lists = new ShuffledLists();
+        final StringArena arena = StringArena.of(List.of("a", "b"), new StringArena.Budget(0));
+        assertSame(arena, lists.load("values", () -> arena));
+    }
+
+    @Test
+    public void testHashAndEqualsAt() throws Exception {
+        final List<String> values = Arrays.asList("", "abc", null, "\u00e9t\u00e9");
+        // a budget of 1 byte spills segments to a memory-mapped file
+        for (final long budget : new long[] { 0, 1 }) {
+            final StringArena arena = StringArena.of(values, new StringArena.Budget(budget));
+            for (int i = 0; i < values.size(); ++i) {
+                final byte[] utf8 = (values.get(i) == null) ? null : values.get(i).getBytes(StandardCharsets.UTF_8);
+                assertEquals(StringArena.hash(utf8), arena.hash(i));
+                for (int j = 0; j < values.size(); ++j) {
+                    assertEquals(i == j, arena.equalsAt(j, utf8));
+                }
+            }
+            assertFalse(arena.equalsAt(1, "abd".getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for EncryptionEngine.
+ */
+public class EncryptionEngineTest {
+
+    private static final String SECRET = "a secret";
+
+    @Test
+    public void testEncryptsLikeACipherPerValue() throws Exception {
+        final Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, Encoder.createKey(SECRET));
+        final String expected = Base64.getEncoder().encodeToString(
+            cipher.doFinal("Jane".getBytes(StandardCharsets.UTF_8))
+        );
+        final EncryptionEngine engine = EncryptionEngine.forSecret(SECRET);
+        assertSame(engine, EncryptionEngine.forSecret(SECRET));
+        assertEquals(expected, engine.encrypt("Jane"));
+        assertEquals(expected, engine.encrypt("Jane"));
+        assertEquals(expected, new Encoder().encrypt("Jane", SECRET));
+        assertNotEquals(expected, EncryptionEngine.forSecret("another secret").encrypt("Jane"));
+    }
+
+    @Test
+    public void testDecrypt() {
+        final EncryptionEngine engine = EncryptionEngine.forSecret(SECRET);
+        assertEquals("Jänë Doe", engine.decrypt(engine.encrypt("Jänë Doe")));
+        assertNull(engine.encrypt(null));
+        assertNull(engine.decrypt(null));
+        assertNull(engine.decrypt("not encrypted"));
+        assertNull(EncryptionEngine.forSecret("another secret").decrypt(engine.encrypt("Jane")));
+    }
+
+    @Test
+    public void testBatch() {
+        final EncryptionEngine engine = EncryptionEngine.forSecret(SECRET);
+        final String[] values = { "Jane", null, "", "John" };
+        final String[] encrypted = engine.encryptBatch(values);
+        assertEquals(values.length, encrypted.length);
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(engine.encrypt(values[i]), encrypted[i]);
+        }
+        assertArrayEquals(values, engine.decryptBatch(encrypted));
+    }
+
+    @Test
+    public void testEncryptFromManyThreads() throws Exception {
+        final EncryptionEngine engine = EncryptionEngine.forSecret(SECRET);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; ++i) {
+                        final String value = "value " + i;
+                        assertEquals(value, engine.decrypt(engine.encrypt(value)));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FF1, with the AES-128 samples of NIST SP 800-38G and longer
+ * inputs.
+ */
+public class FF1Test {
+
+    private static final SecretKeySpec KEY = new SecretKeySpec(
+        hex("2B7E151628AED2A6ABF7158809CF4F3C"), "AES"
+    );
+
+    private static byte[] hex(String s) {
+        final byte[] bytes = new BigInteger("01" + s, 16).toByteArray();
+        final byte[] result = new byte[s.length() / 2];
+        System.arraycopy(bytes, bytes.length - result.length, result, 0, result.length);
+        return result;
+    }
+
+    private static int[] numerals(String s) {
+        final int[] result = new int[s.length()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = Character.digit(s.charAt(i), 36);
+        }
+        return result;
+    }
+
+    private static String string(int[] numerals) {
+        final StringBuilder sb = new StringBuilder();
+        for (int n : numerals) {
+            sb.append(Character.forDigit(n, 36));
+        }
+        return sb.toString();
+    }
+
+    private static void assertSample(int radix, String tweak, String plain, String expected) {
+        final FF1 ff1 = new FF1(KEY, radix);
+        final byte[] t = hex(tweak);
+        final int[] encrypted = ff1.encrypt(numerals(plain), t);
+        assertEquals(expected, string(encrypted));
+        assertEquals(plain, string(ff1.decrypt(encrypted, t)));
+    }
+
+    @Test
+    public void testNistSamples() {
+        assertSample(10, "", "0123456789", "2433477484");
+        assertSample(10, "39383736353433323130", "0123456789", "6124200773");
+        assertSample(36, "3737373770717273373737", "0123456789abcdefghi", "a9tv40mll9kdu509eum");
+    }
+
+    /**
+     * Inputs whose halves exceed 2^55 are enciphered with BigInteger rather
+     * than long arithmetic.  Expected values were computed with an
+     * independent implementation of SP 800-38G, checked against the samples
+     * above.
+     */
+    @Test
+    public void testLongInputs() {
+        assertSample(
+            10,
+            "39383736353433323130",
+            "0123456789012345678901234567890123456789",
+            "0296951420819882533037977519112978106683"
+        );
+        assertSample(26, "01", "0123456789abcdefghijklmnop0123", "mj0k32ni6lple5j8akjbomc2lfc05h");
+    }
+
+    @Test
+    public void testRoundTrips() {
+        final Random random = new Random(1);
+        final FF1 ff1 = new FF1(KEY, 26);
+        for (int n = 0; n < 40; ++n) {
+            final int[] plain = new int[n];
+            for (int i = 0; i < n; ++i) {
+                plain[i] = random.nextInt(26);
+            }
+            final int[] encrypted = ff1.encrypt(plain, new byte[] { 1 });
+            assertEquals(n, encrypted.length);
+            assertArrayEquals(plain, ff1.decrypt(encrypted, new byte[] { 1 }));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ff1.encrypt(new int[] { 26, 1 }, new byte[0]));
+    }
+}
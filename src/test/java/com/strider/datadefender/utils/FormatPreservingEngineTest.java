@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014, Armenak Grigoryan, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.strider.datadefender.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FormatPreservingEngine.
+ */
+public class FormatPreservingEngineTest {
+
+    private static final String SECRET = "a secret";
+
+    private static String format(String value) {
+        return value.replaceAll("[0-9]", "9").replaceAll("[a-z]", "a").replaceAll("[A-Z]", "A");
+    }
+
+    @Test
+    public void testKeepsFormat() {
+        final FormatPreservingEngine engine = FormatPreservingEngine.forSecret(SECRET);
+        for (String value : new String[] { "046 454 286", "+1 (604) 555-0199", "AB12-cd34-EF56", "x", "7", "", "é-42" }) {
+            final String encrypted = engine.encrypt(value);
+            assertEquals(format(value), format(encrypted), value);
+            assertEquals(value, engine.decrypt(encrypted));
+            assertEquals(encrypted, engine.encrypt(value));
+        }
+        assertNotEquals("046 454 286", engine.encrypt("046 454 286"));
+        assertNotEquals(engine.encrypt("046 454 286"), FormatPreservingEngine.forSecret("another").encrypt("046 454 286"));
+        assertNull(engine.encrypt(null));
+    }
+
+    @Test
+    public void testBatch() {
+        final FormatPreservingEngine engine = FormatPreservingEngine.forSecret(SECRET);
+        final String[] values = { "4111111111111111", null, "V6T 1Z4" };
+        final String[] encrypted = engine.encryptBatch(values);
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(engine.encrypt(values[i]), encrypted[i]);
+        }
+        assertArrayEquals(values, engine.decryptBatch(encrypted));
+    }
+
+    @Test
+    public void testKeyIsSeparateFromEncoder() throws Exception {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        final byte[] expected = mac.doFinal("ff1".getBytes(StandardCharsets.US_ASCII));
+        final SecretKeySpec key = FormatPreservingEngine.createKey(SECRET);
+        assertArrayEquals(expected, key.getEncoded());
+        assertEquals("AES", key.getAlgorithm());
+        assertFalse(Arrays.equals(Encoder.createKey(SECRET).getEncoded(), key.getEncoded()));
+        assertEquals("123-456", FormatPreservingEngine.forSecret("").decrypt(FormatPreservingEngine.forSecret("").encrypt("123-456")));
+    }
+}
@@ -1,5 +1,7 @@
 package com.strider.datadefender.utils;
 
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,4 +43,31 @@ public class XegerTest {
         System.out.println(text);
         assertTrue(text.matches(REGEXP_2));
     }
+
+    /**
+     * Test of forPattern and generate with a passed randomizer.
+     */
+    @Test
+    public void testForPattern() {
+        final Xeger instance = Xeger.forPattern(REGEXP_2);
+        assertSame(instance, Xeger.forPattern(REGEXP_2));
+
+        final Random first = new Random(42);
+        final Random second = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            final String text = instance.generate(first);
+            assertTrue(text.matches(REGEXP_2));
+            assertEquals(text, new Xeger(REGEXP_2, second).generate());
+        }
+    }
+
+    /**
+     * Test of generate method with long matches.
+     */
+    @Test
+    public void testGenerateLong() {
+        final Xeger instance = new Xeger("[ab]{20000}");
+        assertTrue(instance.generate().matches("[ab]{20000}"));
+        assertTrue(instance.generate().matches("[ab]{20000}"));
+    }
 }